@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.graph.Dependency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Dependency resolution for the petclinic sample, either computed from the pom (the
+ * "petclinic" app) or from pre-computed thin properties (the "petclinic-preresolved"
+ * app).
+ *
+ * @author Dave Syer
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyResolverBenchmarks {
+
+	@Param({ "petclinic", "petclinic-preresolved" })
+	private String app;
+
+	private Resource pom;
+
+	private Properties properties;
+
+	@Setup
+	public void setup() throws Exception {
+		Fixtures.prepare(this.app);
+		this.pom = Fixtures.pom(this.app);
+		this.properties = Fixtures.offline(Fixtures.properties(this.app));
+	}
+
+	@Benchmark
+	public List<Dependency> dependencies() {
+		return DependencyResolver.instance().dependencies(this.pom,
+				(Properties) this.properties.clone());
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.graph.Dependency;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+/**
+ * Shared set up for the benchmarks. The sample apps are the ones from the launcher
+ * tests (<code>launcher/src/test/resources/apps</code>, or the directory in the
+ * <code>benchmarks.apps</code> system property). Dependencies are resolved once into a
+ * private <code>thin.root</code> (<code>target/thin/benchmarks</code>, or the
+ * <code>benchmarks.root</code> system property), which pulls them from the local Maven
+ * repository as a <code>file://</code> repository if they are there, and after that
+ * everything runs offline.
+ *
+ * @author Dave Syer
+ *
+ */
+class Fixtures {
+
+	static final String APPS = System.getProperty("benchmarks.apps",
+			"../launcher/src/test/resources/apps");
+
+	static final String ROOT = System.getProperty("benchmarks.root",
+			"target/thin/benchmarks");
+
+	static File app(String name) {
+		File file = new File(APPS, name);
+		if (!file.exists()) {
+			throw new IllegalStateException("No such app: " + file.getAbsolutePath()
+					+ " (set benchmarks.apps to the launcher test apps directory)");
+		}
+		return file;
+	}
+
+	static Resource pom(String name) {
+		return new FileSystemResource(new File(app(name), "pom.xml"));
+	}
+
+	static Properties properties(String name) throws Exception {
+		Properties properties = new Properties();
+		File file = new File(app(name), "META-INF/thin.properties");
+		if (file.exists()) {
+			properties.putAll(
+					PropertiesLoaderUtils.loadProperties(new FileSystemResource(file)));
+		}
+		properties.setProperty(DependencyResolver.THIN_ROOT, ROOT);
+		return properties;
+	}
+
+	/**
+	 * Resolve the dependencies of an app once (online if necessary) so that the
+	 * benchmarks can run offline.
+	 * @param name the name of the app
+	 * @return the resolved class path
+	 * @throws Exception if the dependencies cannot be resolved
+	 */
+	static URL[] prepare(String name) throws Exception {
+		List<Dependency> dependencies = DependencyResolver.instance()
+				.dependencies(pom(name), properties(name));
+		List<URL> urls = new ArrayList<>();
+		for (Dependency dependency : dependencies) {
+			urls.add(dependency.getArtifact().getFile().toURI().toURL());
+		}
+		return urls.toArray(new URL[0]);
+	}
+
+	static Properties offline(Properties properties) {
+		properties.setProperty(DependencyResolver.THIN_OFFLINE, "true");
+		return properties;
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.boot.loader.archive.Archive;
+import org.springframework.boot.loader.archive.ExplodedArchive;
+import org.springframework.core.io.Resource;
+
+/**
+ * Locating the pom and merging the thin properties for an exploded sample app.
+ *
+ * @author Dave Syer
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathResolverBenchmarks {
+
+	private static final String[] NO_PROFILES = new String[0];
+
+	@Param({ "petclinic", "petclinic-preresolved" })
+	private String app;
+
+	private PathResolver resolver;
+
+	private Archive archive;
+
+	@Setup
+	public void setup() throws Exception {
+		this.resolver = new PathResolver(DependencyResolver.instance());
+		this.resolver.setRoot(Fixtures.ROOT);
+		this.resolver.setOffline(true);
+		this.archive = new ExplodedArchive(Fixtures.app(this.app));
+	}
+
+	@Benchmark
+	public Resource getPom() {
+		return this.resolver.getPom(this.archive);
+	}
+
+	@Benchmark
+	public Properties getProperties() {
+		return this.resolver.getProperties(this.archive, "thin", NO_PROFILES);
+	}
+
+}
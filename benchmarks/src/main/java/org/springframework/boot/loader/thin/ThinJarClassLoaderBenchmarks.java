@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class and resource lookups in a class loader for the petclinic sample. The
+ * <code>startup</code> benchmark uses a new class loader each time, with the kind of
+ * lookups (and misses) that Spring Boot makes when an application starts, so it
+ * includes the cost of building the package index. The others measure a class loader
+ * that has already seen the names it is asked for.
+ *
+ * @author Dave Syer
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThinJarClassLoaderBenchmarks {
+
+	private static final String APP = "petclinic-preresolved";
+
+	private static final String[] CLASSES = {
+			"org.springframework.context.ApplicationContext",
+			"org.springframework.boot.SpringApplication", "javax.servlet.ServletContext",
+			"com.fasterxml.jackson.databind.ObjectMapper", "java.lang.String",
+			"java.util.concurrent.ConcurrentHashMap" };
+
+	private static final String[] MISSING = { "reactor.core.publisher.Flux",
+			"org.glassfish.jersey.server.spi.Container", "com.google.gson.Gson",
+			"org.springframework.boot.Missing" };
+
+	private static final String[] RESOURCES = { "META-INF/spring.factories",
+			"META-INF/services/javax.servlet.ServletContainerInitializer",
+			"META-INF/spring-autoconfigure-metadata.properties",
+			"org/springframework/boot/missing.properties", "logback.xml" };
+
+	@Param({ "true", "false" })
+	private boolean parentFirst;
+
+	private URL[] urls;
+
+	private ThinJarClassLoader loader;
+
+	@Setup
+	public void setup() throws Exception {
+		this.urls = Fixtures.prepare(APP);
+		this.loader = create();
+	}
+
+	@TearDown
+	public void close() throws IOException {
+		this.loader.close();
+	}
+
+	@Benchmark
+	public void loadClass(Blackhole blackhole) throws Exception {
+		for (String name : CLASSES) {
+			blackhole.consume(this.loader.loadClass(name));
+		}
+	}
+
+	@Benchmark
+	public void loadMissingClass(Blackhole blackhole) {
+		for (String name : MISSING) {
+			try {
+				blackhole.consume(this.loader.loadClass(name));
+			}
+			catch (ClassNotFoundException e) {
+				blackhole.consume(e);
+			}
+		}
+	}
+
+	@Benchmark
+	public void getResource(Blackhole blackhole) {
+		for (String name : RESOURCES) {
+			blackhole.consume(this.loader.getResource(name));
+		}
+	}
+
+	@Benchmark
+	public void getResources(Blackhole blackhole) throws Exception {
+		for (String name : RESOURCES) {
+			Enumeration<URL> resources = this.loader.getResources(name);
+			while (resources.hasMoreElements()) {
+				blackhole.consume(resources.nextElement());
+			}
+		}
+	}
+
+	@Benchmark
+	public void startup(Blackhole blackhole) throws Exception {
+		try (ThinJarClassLoader loader = create()) {
+			for (String name : CLASSES) {
+				blackhole.consume(loader.loadClass(name));
+			}
+			for (String name : MISSING) {
+				try {
+					blackhole.consume(loader.loadClass(name));
+				}
+				catch (ClassNotFoundException e) {
+					blackhole.consume(e);
+				}
+			}
+			for (String name : RESOURCES) {
+				blackhole.consume(loader.getResource(name));
+				blackhole.consume(loader.getResources(name));
+			}
+		}
+	}
+
+	private ThinJarClassLoader create() {
+		ThinJarClassLoader loader = new ThinJarClassLoader(this.urls,
+				ClassLoader.getSystemClassLoader().getParent(), null);
+		loader.setParentFirst(this.parentFirst);
+		return loader;
+	}
+
+}
@@ -17,7 +17,19 @@
 package org.springframework.cloud.deployer.thin;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.boot.loader.thin.ThinJarLauncher;
 import org.springframework.cloud.deployer.spi.app.AppDeployer;
@@ -32,12 +44,20 @@ public class AbstractThinJarSupport {
 
 	private static final String JMX_DEFAULT_DOMAIN_KEY = "spring.jmx.default-domain";
 
-	private Map<String, ThinJarAppWrapper> apps = new LinkedHashMap<>();
+	private ConcurrentMap<String, ThinJarAppWrapper> apps = new ConcurrentHashMap<>();
 
 	private String name = "thin";
 
 	private String[] profiles = new String[0];
 
+	private SharedClassLoaders shared;
+
+	private final ClassLoaderLeakDetector leaks = new ClassLoaderLeakDetector();
+
+	private int deployThreads = Runtime.getRuntime().availableProcessors();
+
+	private volatile ExecutorService executor;
+
 	public AbstractThinJarSupport() {
 		this("thin");
 	}
@@ -47,18 +67,150 @@ public class AbstractThinJarSupport {
 		this.profiles = profiles;
 	}
 
+	/**
+	 * Flag to say that dependencies which deployed apps have in common (same coordinates
+	 * and same checksum) should be loaded once, in a shared parent class loader, instead
+	 * of once per app. Saves memory (especially metaspace) when there are many apps with
+	 * similar dependencies, but only works if the shared libraries do not need to see the
+	 * classes in the apps, and do not keep global state that the apps would fight over.
+	 * Only the dependencies whose own dependencies are all shared (in the same versions)
+	 * go in the shared class loader. Default false.
+	 *
+	 * @param shareDependencies the flag to set
+	 */
+	public void setShareDependencies(boolean shareDependencies) {
+		this.shared = shareDependencies ? new SharedClassLoaders() : null;
+	}
+
+	/**
+	 * Flag to say that references to the class loader of an app from threads (including
+	 * timers), JDBC drivers and shutdown hooks should be removed when it is undeployed, so
+	 * that it can be garbage collected. Threads started by the app are interrupted, and
+	 * others just have their context class loader reset. Default false (leaked class
+	 * loaders are still reported, see {@link #checkLeaks()}).
+	 *
+	 * @param cleanupLeaks the flag to set
+	 */
+	public void setCleanupLeaks(boolean cleanupLeaks) {
+		this.leaks.setCleanup(cleanupLeaks);
+	}
+
+	/**
+	 * The class loaders of undeployed apps that had not been garbage collected the last
+	 * time they were checked (when another app was undeployed, or by
+	 * {@link #checkLeaks()}), with their suspected GC roots. Cheap, since it does not
+	 * check again.
+	 *
+	 * @return the leaked class loaders
+	 */
+	public List<ClassLoaderLeakDetector.Leak> getLeaks() {
+		return this.leaks.getLeaks();
+	}
+
+	/**
+	 * Check for class loaders of undeployed apps that have not been garbage collected.
+	 * <b>Calls {@link System#gc()}</b> first, which stops the whole JVM (including all the
+	 * deployed apps) for a full collection, so use it sparingly (e.g. in tests or
+	 * diagnostics, not on a request path).
+	 *
+	 * @return the leaked class loaders
+	 */
+	public List<ClassLoaderLeakDetector.Leak> checkLeaks() {
+		System.gc();
+		return this.leaks.check();
+	}
+
+	/**
+	 * The maximum number of apps to deploy (resolve dependencies and start the context)
+	 * at the same time. Default is the number of processors.
+	 *
+	 * @param deployThreads the number of threads to set
+	 */
+	public void setDeployThreads(int deployThreads) {
+		this.deployThreads = deployThreads;
+	}
+
+	/**
+	 * Deploy an app and wait for it to start (or fail). If it fails with a runtime
+	 * exception, that is the exception that is thrown.
+	 *
+	 * @param request the deployment request
+	 * @return the id of the app
+	 */
 	public String deploy(AppDeploymentRequest request) {
-		ThinJarAppWrapper wrapper = new ThinJarAppWrapper(request.getResource(), getName(request),
-				getProfiles(request));
-		String id = wrapper.getId();
-		if (!apps.containsKey(id)) {
-			apps.put(id, wrapper);
+		try {
+			return deployAsync(request).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deploying", e);
 		}
-		else {
-			wrapper = apps.get(id);
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException("Cannot deploy", e.getCause());
 		}
-		wrapper.run(getProperties(request), request.getCommandlineArguments());
-		return id;
+	}
+
+	/**
+	 * Deploy an app without waiting for it to start. The app is registered (and its
+	 * status is available) immediately, and the dependency resolution and context
+	 * startup happen in a background thread, in parallel with other deployments.
+	 *
+	 * @param request the deployment request
+	 * @return a future that yields the id of the app when it has started (or failed)
+	 */
+	public Future<String> deployAsync(AppDeploymentRequest request) {
+		ThinJarAppWrapper wrapper = new ThinJarAppWrapper(request.getResource(),
+				getName(request), getProfiles(request));
+		final String id = wrapper.getId();
+		ThinJarAppWrapper existing = apps.putIfAbsent(id, wrapper);
+		if (existing != null) {
+			wrapper = existing;
+		}
+		wrapper.setSharedClassLoaders(this.shared);
+		wrapper.setLeakDetector(this.leaks);
+		wrapper.launching();
+		prepare(wrapper, request);
+		final ThinJarAppWrapper app = wrapper;
+		final Map<String, String> properties = getProperties(request);
+		final List<String> args = request.getCommandlineArguments();
+		return getExecutor().submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				app.run(properties, args);
+				return id;
+			}
+		});
+	}
+
+	/**
+	 * Callback for subclasses when an app has been registered, but before it is run.
+	 *
+	 * @param wrapper the app
+	 * @param request the deployment request
+	 */
+	protected void prepare(ThinJarAppWrapper wrapper, AppDeploymentRequest request) {
+	}
+
+	private ExecutorService getExecutor() {
+		if (this.executor == null) {
+			synchronized (this) {
+				if (this.executor == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(
+							this.deployThreads, this.deployThreads, 60L,
+							TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+							new DeployerThreadFactory());
+					executor.allowCoreThreadTimeOut(true);
+					this.executor = executor;
+				}
+			}
+		}
+		return this.executor;
 	}
 
 	protected Map<String, String> getProperties(AppDeploymentRequest request) {
@@ -109,4 +261,18 @@ public class AbstractThinJarSupport {
 		return apps.get(id);
 	}
 
+	private static class DeployerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable,
+					"thin-deployer-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
 }
\ No newline at end of file
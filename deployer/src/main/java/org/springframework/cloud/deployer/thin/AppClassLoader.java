@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class loader for a deployed app. Keeps count of the classes that it defines
+ * itself (so not the ones from a parent class loader), since there is no other way to
+ * find out how many classes a class loader has loaded.
+ *
+ * @author Dave Syer
+ *
+ */
+class AppClassLoader extends URLClassLoader {
+
+	static {
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	private final AtomicInteger classes = new AtomicInteger();
+
+	AppClassLoader(URL[] urls, ClassLoader parent) {
+		super(urls, parent);
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		Class<?> type = super.findClass(name);
+		this.classes.incrementAndGet();
+		return type;
+	}
+
+	/**
+	 * The number of classes defined by this class loader.
+	 * @return the number of classes
+	 */
+	public int getLoadedClassCount() {
+		return this.classes.get();
+	}
+
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Keeps track of the class loaders of undeployed apps (with weak references) and reports
+ * the ones that are not garbage collected, together with the things that are suspected
+ * of keeping them alive: threads (including timers) that were started by the app (in its
+ * thread group, or running a class or a {@link Runnable} from the app) or have its class
+ * loader as context class loader, thread locals with keys or values from the
+ * app, JDBC drivers registered by the app and shutdown hooks. Optionally it can also
+ * clean up some of those when the app is undeployed (reset the context class loader of
+ * threads, interrupt threads that belong to the app, stop timer threads, deregister
+ * drivers and remove shutdown hooks). Thread locals are only reported, since they can't
+ * safely be modified from another thread. JDBC drivers are found with the public
+ * {@link java.sql.DriverManager} API through a {@link JdbcLeakPrevention} in the app's
+ * class loader, but the other checks rely on reflection into JDK internals, so they are
+ * best efforts and might find nothing on newer JVMs.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ClassLoaderLeakDetector {
+
+	private static Log logger = LogFactory.getLog(ClassLoaderLeakDetector.class);
+
+	private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+
+	private final Map<Reference<? extends ClassLoader>, Tracked> tracked = new LinkedHashMap<>();
+
+	private boolean cleanup = false;
+
+	private List<Leak> leaks = Collections.emptyList();
+
+	/**
+	 * Flag to say that references to the class loader of an app from threads, timers,
+	 * JDBC drivers and shutdown hooks should be removed when it is undeployed. Default
+	 * false.
+	 *
+	 * @param cleanup the flag to set
+	 */
+	public void setCleanup(boolean cleanup) {
+		this.cleanup = cleanup;
+	}
+
+	/**
+	 * Start tracking the class loader of an app that has just been undeployed (and clean
+	 * up references to it if that is switched on).
+	 *
+	 * @param id the id of the app
+	 * @param loader the class loader of the app
+	 */
+	public void track(String id, ClassLoader loader) {
+		track(id, loader, null);
+	}
+
+	/**
+	 * Start tracking the class loader of an app that has just been undeployed (and clean
+	 * up references to it if that is switched on).
+	 *
+	 * @param id the id of the app
+	 * @param loader the class loader of the app
+	 * @param group the thread group that the app was started in (so threads it started
+	 * are in it too), or null if not known
+	 */
+	public synchronized void track(String id, ClassLoader loader, ThreadGroup group) {
+		if (this.cleanup) {
+			cleanup(loader, group);
+		}
+		this.tracked.put(new WeakReference<>(loader, this.queue),
+				new Tracked(id, group));
+	}
+
+	/**
+	 * Check the class loaders that are being tracked, forgetting the ones that have been
+	 * collected, and report the ones that have survived at least one previous check. Call
+	 * after a garbage collection.
+	 *
+	 * @return the class loaders that have leaked
+	 */
+	public synchronized List<Leak> check() {
+		expunge();
+		List<Leak> leaks = new ArrayList<>();
+		for (Map.Entry<Reference<? extends ClassLoader>, Tracked> entry : this.tracked
+				.entrySet()) {
+			Tracked tracked = entry.getValue();
+			if (tracked.checks++ == 0) {
+				continue;
+			}
+			ClassLoader loader = entry.getKey().get();
+			if (loader == null) {
+				continue;
+			}
+			Leak leak = new Leak(tracked.id, tracked.time, roots(loader, tracked.group));
+			if (!tracked.reported) {
+				tracked.reported = true;
+				logger.warn("Class loader for app " + tracked.id
+						+ " was not collected after undeploy. Suspected GC roots: "
+						+ leak.getRoots());
+			}
+			leaks.add(leak);
+		}
+		this.leaks = leaks;
+		return leaks;
+	}
+
+	/**
+	 * The class loaders that had leaked the last time they were checked (does not check
+	 * again).
+	 *
+	 * @return the class loaders that have leaked
+	 */
+	public synchronized List<Leak> getLeaks() {
+		return this.leaks;
+	}
+
+	/**
+	 * The number of class loaders that are being tracked (i.e. have not yet been
+	 * collected).
+	 *
+	 * @return the number of class loaders
+	 */
+	public synchronized int getTrackedCount() {
+		expunge();
+		return this.tracked.size();
+	}
+
+	private void expunge() {
+		Reference<? extends ClassLoader> reference;
+		while ((reference = this.queue.poll()) != null) {
+			this.tracked.remove(reference);
+		}
+	}
+
+	List<String> roots(ClassLoader loader) {
+		return roots(loader, null);
+	}
+
+	List<String> roots(ClassLoader loader, ThreadGroup group) {
+		List<String> roots = new ArrayList<>();
+		for (Thread thread : threads()) {
+			if (isStartedBy(thread, loader, group)) {
+				roots.add("Thread started by app: " + thread.getName());
+			}
+			else if (thread.getContextClassLoader() == loader) {
+				roots.add((isTimer(thread) ? "Timer" : "Thread") + " with context loader: "
+						+ thread.getName());
+			}
+			for (Object value : threadLocals(thread)) {
+				if (isLoadedBy(value, loader)) {
+					roots.add("ThreadLocal in thread " + thread.getName() + ": "
+							+ value.getClass().getName());
+				}
+			}
+		}
+		for (String driver : jdbc(loader, "getJdbcDriverRegistrations")) {
+			roots.add("JDBC driver: " + driver);
+		}
+		for (Thread hook : shutdownHooks()) {
+			if (hook.getClass().getClassLoader() == loader
+					|| hook.getContextClassLoader() == loader) {
+				roots.add("Shutdown hook: " + hook.getName());
+			}
+		}
+		return roots;
+	}
+
+	void cleanup(ClassLoader loader, ThreadGroup group) {
+		for (Thread thread : threads()) {
+			if (thread == Thread.currentThread()) {
+				continue;
+			}
+			if (isStartedBy(thread, loader, group)) {
+				logger.info("Interrupting thread started by app: " + thread.getName());
+				thread.interrupt();
+			}
+			else if (thread.getContextClassLoader() == loader) {
+				if (isTimer(thread)) {
+					logger.info("Stopping timer: " + thread.getName());
+					stopTimer(thread);
+				}
+				thread.setContextClassLoader(loader.getParent());
+			}
+		}
+		for (String driver : jdbc(loader, "clearJdbcDriverRegistrations")) {
+			logger.info("Deregistered JDBC driver: " + driver);
+		}
+		for (Thread hook : shutdownHooks()) {
+			if (hook.getClass().getClassLoader() == loader
+					|| hook.getContextClassLoader() == loader) {
+				logger.info("Removing shutdown hook: " + hook.getName());
+				try {
+					Runtime.getRuntime().removeShutdownHook(hook);
+				}
+				catch (IllegalStateException e) {
+					// JVM is shutting down anyway
+				}
+			}
+		}
+	}
+
+	private boolean isLoadedBy(Object value, ClassLoader loader) {
+		if (value == null) {
+			return false;
+		}
+		if (value == loader) {
+			return true;
+		}
+		if (value instanceof Class) {
+			return ((Class<?>) value).getClassLoader() == loader;
+		}
+		return value.getClass().getClassLoader() == loader;
+	}
+
+	/**
+	 * A thread belongs to the app if it is in the app's thread group (so it was started
+	 * from a thread of the app), if its class comes from the app, or if it is a plain
+	 * thread running a {@link Runnable} from the app (only visible with reflection into
+	 * {@link Thread}).
+	 */
+	private boolean isStartedBy(Thread thread, ClassLoader loader, ThreadGroup group) {
+		ThreadGroup current = thread.getThreadGroup();
+		if (group != null && current != null && group.parentOf(current)) {
+			return true;
+		}
+		return thread.getClass().getClassLoader() == loader
+				|| isLoadedBy(target(thread), loader);
+	}
+
+	private Object target(Thread thread) {
+		try {
+			if (ReflectionUtils.findField(Thread.class, "target") != null) {
+				return getField(thread, "target");
+			}
+			// JDK 19 and later keep the target in a holder
+			Object holder = getField(thread, "holder");
+			return holder == null ? null : getField(holder, "task");
+		}
+		catch (RuntimeException e) {
+			logger.debug("Cannot inspect thread target: " + thread.getName(), e);
+			return null;
+		}
+	}
+
+	private boolean isTimer(Thread thread) {
+		return "java.util.TimerThread".equals(thread.getClass().getName());
+	}
+
+	private void stopTimer(Thread thread) {
+		try {
+			Object queue = getField(thread, "queue");
+			synchronized (queue) {
+				setField(thread, "newTasksMayBeScheduled", false);
+				ReflectionUtils.invokeMethod(
+						ReflectionUtils.findMethod(queue.getClass(), "clear"), queue);
+				queue.notifyAll();
+			}
+		}
+		catch (RuntimeException e) {
+			logger.debug("Cannot stop timer: " + thread.getName(), e);
+		}
+	}
+
+	private List<Thread> threads() {
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null) {
+			group = group.getParent();
+		}
+		Thread[] threads = new Thread[group.activeCount() * 2 + 10];
+		int count = group.enumerate(threads, true);
+		List<Thread> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(threads[i]);
+		}
+		return result;
+	}
+
+	private List<Object> threadLocals(Thread thread) {
+		List<Object> values = new ArrayList<>();
+		try {
+			for (String name : new String[] { "threadLocals",
+					"inheritableThreadLocals" }) {
+				Object map = getField(thread, name);
+				if (map == null) {
+					continue;
+				}
+				Object[] table = (Object[]) getField(map, "table");
+				for (Object entry : table) {
+					if (entry != null) {
+						values.add(((Reference<?>) entry).get());
+						values.add(getField(entry, "value"));
+					}
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			logger.debug("Cannot inspect thread locals: " + thread.getName(), e);
+		}
+		return values;
+	}
+
+	/**
+	 * Call a method on a {@link JdbcLeakPrevention} in the app's class loader (the
+	 * driver manager only shows a caller the drivers that it can see). The app normally
+	 * has one already, since it deregisters its drivers when it is closed, so this works
+	 * even after its class loader has been closed.
+	 */
+	private List<String> jdbc(ClassLoader loader, String name) {
+		try {
+			Class<?> type = ClassUtils.forName(JdbcLeakPrevention.class.getName(),
+					loader);
+			if (type.getClassLoader() != loader) {
+				// From a parent, so it can't see the app's drivers
+				return Collections.emptyList();
+			}
+			Object jdbc = BeanUtils.instantiateClass(type);
+			@SuppressWarnings("unchecked")
+			List<String> drivers = (List<String>) ReflectionUtils
+					.invokeMethod(ReflectionUtils.findMethod(type, name), jdbc);
+			return drivers;
+		}
+		catch (Exception | LinkageError e) {
+			logger.debug("Cannot inspect JDBC drivers", e);
+			return Collections.emptyList();
+		}
+	}
+
+	private Collection<Thread> shutdownHooks() {
+		try {
+			Class<?> type = ClassUtils.forName("java.lang.ApplicationShutdownHooks",
+					null);
+			Field field = ReflectionUtils.findField(type, "hooks");
+			ReflectionUtils.makeAccessible(field);
+			@SuppressWarnings("unchecked")
+			Map<Thread, Thread> hooks = (Map<Thread, Thread>) ReflectionUtils
+					.getField(field, null);
+			if (hooks == null) {
+				return Collections.emptyList();
+			}
+			synchronized (type) {
+				return new ArrayList<>(hooks.keySet());
+			}
+		}
+		catch (Exception e) {
+			logger.debug("Cannot inspect shutdown hooks", e);
+			return Collections.emptyList();
+		}
+	}
+
+	private Object getField(Object target, String name) {
+		Field field = ReflectionUtils.findField(target.getClass(), name);
+		if (field == null) {
+			throw new IllegalStateException(
+					"No field " + name + " in " + target.getClass());
+		}
+		ReflectionUtils.makeAccessible(field);
+		return ReflectionUtils.getField(field, target);
+	}
+
+	private void setField(Object target, String name, Object value) {
+		Field field = ReflectionUtils.findField(target.getClass(), name);
+		if (field == null) {
+			throw new IllegalStateException(
+					"No field " + name + " in " + target.getClass());
+		}
+		ReflectionUtils.makeAccessible(field);
+		ReflectionUtils.setField(field, target, value);
+	}
+
+	/**
+	 * A class loader that was not collected after its app was undeployed.
+	 */
+	public static class Leak {
+
+		private final String id;
+
+		private final long time;
+
+		private final List<String> roots;
+
+		Leak(String id, long time, List<String> roots) {
+			this.id = id;
+			this.time = time;
+			this.roots = roots;
+		}
+
+		/**
+		 * @return the id of the app
+		 */
+		public String getId() {
+			return this.id;
+		}
+
+		/**
+		 * @return the time the app was undeployed (milliseconds since the epoch)
+		 */
+		public long getTime() {
+			return this.time;
+		}
+
+		/**
+		 * @return descriptions of the suspected GC roots (possibly empty if nothing
+		 * obvious was found)
+		 */
+		public List<String> getRoots() {
+			return this.roots;
+		}
+
+		@Override
+		public String toString() {
+			return "Leak [id=" + this.id + ", roots=" + this.roots + "]";
+		}
+
+	}
+
+	private static class Tracked {
+
+		private final String id;
+
+		private final long time = System.currentTimeMillis();
+
+		private int checks;
+
+		private boolean reported;
+
+		private final ThreadGroup group;
+
+		Tracked(String id, ThreadGroup group) {
+			this.id = id;
+			this.group = group;
+		}
+
+	}
+
+}
@@ -36,16 +36,20 @@ import org.springframework.util.ClassUtils;
  */
 public class ContextRunner {
 
-	private ConfigurableApplicationContext context;
+	private volatile ConfigurableApplicationContext context;
+	private volatile boolean closed;
 	private Thread runThread;
+	private ThreadGroup threadGroup;
 	private boolean running = false;
 	private Throwable error;
 	private long timeout = 120000;
 
 	public void run(final String source, final Map<String, Object> properties,
 			final String... args) {
-		// Run in new thread to ensure that the context classloader is setup
-		this.runThread = new Thread(new Runnable() {
+		// Run in new thread to ensure that the context classloader is setup, in a new
+		// group so that threads started by the app can be identified
+		this.threadGroup = new ThreadGroup("app-" + source);
+		this.runThread = new Thread(this.threadGroup, new Runnable() {
 			@Override
 			public void run() {
 				try {
@@ -61,6 +65,10 @@ public class ContextRunner {
 							.registerShutdownHook(false)
 							.environment(environment);
 					context = builder.run(args);
+					if (closed) {
+						// Closed (e.g. cancelled) before it finished starting
+						context.close();
+					}
 				}
 				catch (Throwable ex) {
 					error = ex;
@@ -98,6 +106,7 @@ public class ContextRunner {
 	}
 
 	public void close() {
+		this.closed = true;
 		if (this.context != null) {
 			this.context.close();
 		}
@@ -111,6 +120,10 @@ public class ContextRunner {
 		this.runThread = null;
 	}
 
+	public ThreadGroup getThreadGroup() {
+		return this.threadGroup;
+	}
+
 	public boolean isRunning() {
 		return running;
 	}
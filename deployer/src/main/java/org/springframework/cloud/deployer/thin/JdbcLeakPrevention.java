@@ -35,6 +35,25 @@ import java.util.List;
  */
 public class JdbcLeakPrevention {
 
+	/**
+	 * The JDBC drivers that were registered by the class loader of this class. Has to be
+	 * called from an instance of this class loaded by the class loader of interest,
+	 * because the {@link DriverManager} only lists drivers that are visible to its
+	 * caller.
+	 * @return the class names of the drivers
+	 */
+	public List<String> getJdbcDriverRegistrations() {
+		List<String> driverNames = new ArrayList<>();
+		Enumeration<Driver> drivers = DriverManager.getDrivers();
+		while (drivers.hasMoreElements()) {
+			Driver driver = drivers.nextElement();
+			if (driver.getClass().getClassLoader() == this.getClass().getClassLoader()) {
+				driverNames.add(driver.getClass().getCanonicalName());
+			}
+		}
+		return driverNames;
+	}
+
 	public List<String> clearJdbcDriverRegistrations() throws SQLException {
 		List<String> driverNames = new ArrayList<>();
 
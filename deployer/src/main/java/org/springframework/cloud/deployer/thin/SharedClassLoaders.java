@@ -0,0 +1,383 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.graph.Dependency;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Reference counted class loaders for the dependencies that deployed apps have in
+ * common, so that the classes in them are only loaded once. Dependencies are identical
+ * if they have the same coordinates and the same checksum. When an app is deployed it
+ * uses the biggest existing shared class loader whose dependencies it has all of, or if
+ * there isn't one, a new one for the dependencies it has in common with the running app
+ * that it overlaps with most. Apps that are already running keep their class loaders, so
+ * the first app with a given set of dependencies does not share anything. A shared class
+ * loader is closed when the last app using it is released.
+ * <p>
+ * A dependency is only shared if everything it depends on (transitively) is shared as
+ * well, in the version that every app using the shared class loader resolved, otherwise
+ * its classes would not be able to see the ones they link to. The dependencies of an
+ * artifact are the ones declared in its pom (and its parents) in the repository,
+ * including optional and provided ones, since the resolved graph drops the edges that
+ * lost version mediation. An artifact without a pom is never shared.
+ *
+ * @author Dave Syer
+ *
+ */
+class SharedClassLoaders {
+
+	private static Log logger = LogFactory.getLog(SharedClassLoaders.class);
+
+	private final Map<String, App> apps = new HashMap<>();
+
+	private final Map<String, Shared> leases = new HashMap<>();
+
+	private final List<Shared> loaders = new ArrayList<>();
+
+	private final Map<String, String> checksums = new HashMap<>();
+
+	private final Map<String, Set<String>> requirements = new HashMap<>();
+
+	/**
+	 * Register the dependencies of an app and compute the class loader it should use as
+	 * a parent.
+	 * @param id the id of the app
+	 * @param dependencies the resolved dependencies of the app
+	 * @param parent the parent class loader to use if nothing is shared
+	 * @return the parent class loader and the class path entries that are not in it
+	 */
+	public synchronized Lease acquire(String id, List<Dependency> dependencies,
+			ClassLoader parent) {
+		if (this.apps.containsKey(id)) {
+			release(id);
+		}
+		App app = new App();
+		Map<String, URL> libraries = libraries(id, dependencies, app);
+		Shared shared = find(app);
+		if (shared == null) {
+			Set<String> common = common(app);
+			if (!common.isEmpty()) {
+				List<URL> urls = new ArrayList<>();
+				for (String key : common) {
+					urls.add(libraries.get(key));
+				}
+				shared = new Shared(common, new URLClassLoader(urls.toArray(new URL[0]),
+						parent));
+				this.loaders.add(shared);
+				logger.info("Created shared class loader with " + urls.size()
+						+ " dependencies for " + id);
+			}
+		}
+		List<URL> urls = new ArrayList<>();
+		for (Map.Entry<String, URL> library : libraries.entrySet()) {
+			if (shared == null || !shared.keys.contains(library.getKey())) {
+				urls.add(library.getValue());
+			}
+		}
+		this.apps.put(id, app);
+		if (shared == null) {
+			return new Lease(parent, urls);
+		}
+		shared.count++;
+		this.leases.put(id, shared);
+		return new Lease(shared.loader, urls);
+	}
+
+	/**
+	 * Release the class loaders that an app was using.
+	 * @param id the id of the app
+	 */
+	public synchronized void release(String id) {
+		this.apps.remove(id);
+		Shared shared = this.leases.remove(id);
+		if (shared != null && --shared.count <= 0) {
+			this.loaders.remove(shared);
+			try {
+				shared.loader.close();
+			}
+			catch (IOException e) {
+				logger.error("Cannot close shared class loader", e);
+			}
+		}
+	}
+
+	/**
+	 * The number of shared class loaders that are in use.
+	 * @return the number of shared class loaders
+	 */
+	public synchronized int size() {
+		return this.loaders.size();
+	}
+
+	private Shared find(App app) {
+		Shared result = null;
+		for (Shared shared : this.loaders) {
+			if (app.keys.containsAll(shared.keys)
+					&& (result == null || shared.keys.size() > result.keys.size())
+					&& closed(shared.keys, app).size() == shared.keys.size()) {
+				result = shared;
+			}
+		}
+		return result;
+	}
+
+	private Set<String> common(App app) {
+		Set<String> result = new LinkedHashSet<>();
+		for (App other : this.apps.values()) {
+			Set<String> common = new LinkedHashSet<>(app.keys);
+			common.retainAll(other.keys);
+			common = closed(common, app, other);
+			if (common.size() > result.size()) {
+				result = common;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The biggest subset of the keys whose dependencies (in the versions resolved by all
+	 * the apps) are also in the subset.
+	 */
+	private Set<String> closed(Set<String> keys, App... apps) {
+		Set<String> result = new LinkedHashSet<>(keys);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Iterator<String> iterator = result.iterator(); iterator.hasNext();) {
+				if (!isClosed(iterator.next(), result, apps)) {
+					iterator.remove();
+					changed = true;
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean isClosed(String key, Set<String> keys, App... apps) {
+		Set<String> required = this.requirements.get(key);
+		if (required == null) {
+			return false;
+		}
+		for (String module : required) {
+			for (App app : apps) {
+				Set<String> versions = app.modules.get(module);
+				if (versions != null && !keys.containsAll(versions)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private Map<String, URL> libraries(String id, List<Dependency> dependencies,
+			App app) {
+		Map<String, URL> libraries = new LinkedHashMap<>();
+		for (Dependency dependency : dependencies) {
+			Artifact artifact = dependency.getArtifact();
+			File file = artifact.getFile();
+			try {
+				if (file.isFile()) {
+					String key = artifact.toString() + "@" + checksum(file);
+					libraries.put(key, file.toURI().toURL());
+					app.add(key, artifact);
+					if (!this.requirements.containsKey(key)) {
+						this.requirements.put(key, requirements(artifact));
+					}
+				}
+				else {
+					// Not a jar, so it can't be shared (it can change)
+					libraries.put(file.getAbsolutePath() + "@" + id,
+							file.toURI().toURL());
+				}
+			}
+			catch (MalformedURLException e) {
+				throw new IllegalStateException("Cannot create URL", e);
+			}
+		}
+		return libraries;
+	}
+
+	private String checksum(File file) {
+		String key = file.getAbsolutePath() + ":" + file.length() + ":"
+				+ file.lastModified();
+		String checksum = this.checksums.get(key);
+		if (checksum == null) {
+			try (InputStream stream = new FileInputStream(file)) {
+				checksum = DigestUtils.md5DigestAsHex(stream);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Cannot read " + file, e);
+			}
+			this.checksums.put(key, checksum);
+		}
+		return checksum;
+	}
+
+	/**
+	 * The modules (group and artifact ids) that an artifact depends on, according to its
+	 * pom and the poms of its parents in the same repository, or null if they are not
+	 * all there.
+	 */
+	private Set<String> requirements(Artifact artifact) {
+		File file = artifact.getFile();
+		String suffix = (artifact.getClassifier().length() > 0
+				? "-" + artifact.getClassifier() : "") + "." + artifact.getExtension();
+		if (!file.getName().endsWith(suffix)) {
+			return null;
+		}
+		File pom = new File(file.getParentFile(), file.getName().substring(0,
+				file.getName().length() - suffix.length()) + ".pom");
+		// The repository root is above the version, artifact and group directories
+		File root = file.getParentFile().getParentFile();
+		int depth = artifact.getGroupId().split("\\.").length;
+		for (int i = 0; root != null && i < depth; i++) {
+			root = root.getParentFile();
+		}
+		Set<String> result = new HashSet<>();
+		// Bounded, in case of a cycle in the parents
+		for (int count = 0; count < 20; count++) {
+			Model model = model(pom);
+			if (model == null) {
+				return null;
+			}
+			for (org.apache.maven.model.Dependency dependency : model
+					.getDependencies()) {
+				if ("test".equals(dependency.getScope())) {
+					continue;
+				}
+				String groupId = dependency.getGroupId();
+				if ("${project.groupId}".equals(groupId)
+						|| "${pom.groupId}".equals(groupId)) {
+					groupId = artifact.getGroupId();
+				}
+				if (groupId == null || groupId.contains("${")
+						|| dependency.getArtifactId().contains("${")) {
+					return null;
+				}
+				result.add(groupId + ":" + dependency.getArtifactId());
+			}
+			Parent parent = model.getParent();
+			if (parent == null) {
+				return result;
+			}
+			if (root == null || parent.getVersion() == null
+					|| parent.getVersion().contains("${")) {
+				return null;
+			}
+			pom = new File(root,
+					parent.getGroupId().replace(".", "/") + "/" + parent.getArtifactId()
+							+ "/" + parent.getVersion() + "/" + parent.getArtifactId()
+							+ "-" + parent.getVersion() + ".pom");
+		}
+		return null;
+	}
+
+	private Model model(File pom) {
+		if (!pom.isFile()) {
+			return null;
+		}
+		try (InputStream stream = new FileInputStream(pom)) {
+			return new MavenXpp3Reader().read(stream, false);
+		}
+		catch (Exception e) {
+			logger.debug("Cannot read " + pom, e);
+			return null;
+		}
+	}
+
+	/**
+	 * The class loading arrangements for a single app: a parent class loader (possibly
+	 * shared) and the class path entries that are not in it.
+	 */
+	static class Lease {
+
+		private final ClassLoader parent;
+
+		private final List<URL> urls;
+
+		Lease(ClassLoader parent, List<URL> urls) {
+			this.parent = parent;
+			this.urls = urls;
+		}
+
+		public ClassLoader getParent() {
+			return this.parent;
+		}
+
+		public List<URL> getUrls() {
+			return this.urls;
+		}
+
+	}
+
+	private static class App {
+
+		private final Set<String> keys = new HashSet<>();
+
+		private final Map<String, Set<String>> modules = new HashMap<>();
+
+		void add(String key, Artifact artifact) {
+			this.keys.add(key);
+			String module = artifact.getGroupId() + ":" + artifact.getArtifactId();
+			if (!this.modules.containsKey(module)) {
+				this.modules.put(module, new HashSet<String>());
+			}
+			this.modules.get(module).add(key);
+		}
+
+	}
+
+	private static class Shared {
+
+		private final Set<String> keys;
+
+		private final URLClassLoader loader;
+
+		private int count;
+
+		Shared(Set<String> keys, URLClassLoader loader) {
+			this.keys = keys;
+			this.loader = loader;
+		}
+
+	}
+
+}
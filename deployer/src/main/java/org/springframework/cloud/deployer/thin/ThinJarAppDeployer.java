@@ -50,6 +50,8 @@ public class ThinJarAppDeployer extends AbstractThinJarSupport implements AppDep
 
 	private static final int DEFAULT_SERVER_PORT = 8080;
 
+	private ThinJarAppMetrics metrics;
+
 	public ThinJarAppDeployer() {
 		this("thin");
 	}
@@ -58,13 +60,23 @@ public class ThinJarAppDeployer extends AbstractThinJarSupport implements AppDep
 		super(name, profiles);
 	}
 
+	/**
+	 * Optional Micrometer gauges for the deployed apps (requires Micrometer on the class
+	 * path).
+	 * 
+	 * @param metrics the metrics to register apps with
+	 */
+	public void setMetrics(ThinJarAppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	@Override
-	public String deploy(AppDeploymentRequest request) {
-		String id = super.deploy(request);
-		ThinJarAppWrapper wrapper = super.getWrapper(id);
-		wrapper.status(
-				AppStatus.of(id).with(new InMemoryAppInstanceStatus(wrapper)).build());
-		return id;
+	protected void prepare(ThinJarAppWrapper wrapper, AppDeploymentRequest request) {
+		wrapper.status(AppStatus.of(wrapper.getId())
+				.with(new InMemoryAppInstanceStatus(wrapper)).build());
+		if (this.metrics != null) {
+			this.metrics.register(wrapper, request.getDefinition().getName());
+		}
 	}
 
 	@Override
@@ -87,7 +99,11 @@ public class ThinJarAppDeployer extends AbstractThinJarSupport implements AppDep
 
 	@Override
 	public void undeploy(String id) {
+		ThinJarAppWrapper wrapper = getWrapper(id);
 		super.cancel(id);
+		if (this.metrics != null && wrapper != null) {
+			this.metrics.unregister(wrapper);
+		}
 	}
 
 	/**
@@ -205,6 +221,8 @@ class InMemoryAppInstanceStatus implements AppInstanceStatus {
 	public DeploymentState getState() {
 		LaunchState state = wrapper.getState();
 		switch (state) {
+		case launching:
+			return DeploymentState.deploying;
 		case running:
 			return DeploymentState.deployed;
 		case failed:
@@ -218,7 +236,7 @@ class InMemoryAppInstanceStatus implements AppInstanceStatus {
 
 	@Override
 	public Map<String, String> getAttributes() {
-		return Collections.emptyMap();
+		return this.wrapper.getAttributes();
 	}
 
 }
\ No newline at end of file
@@ -25,4 +25,20 @@ public class ThinJarAppDeployerAutoConfiguration {
 	public TaskLauncher taskLauncher() {
 		return new ThinJarTaskLauncher();
 	}
+
+	@Configuration
+	@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+	protected static class ThinJarAppMetricsConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean(ThinJarAppMetrics.class)
+		public ThinJarAppMetrics thinJarAppMetrics(AppDeployer deployer) {
+			ThinJarAppMetrics metrics = new ThinJarAppMetrics();
+			if (deployer instanceof ThinJarAppDeployer) {
+				((ThinJarAppDeployer) deployer).setMetrics(metrics);
+			}
+			return metrics;
+		}
+
+	}
 }
\ No newline at end of file
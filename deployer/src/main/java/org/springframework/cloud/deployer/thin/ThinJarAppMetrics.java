@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer gauges for the apps deployed by a {@link ThinJarAppDeployer}: the same
+ * values as the status attributes of the apps, tagged with the app name and id. Apps
+ * deployed before the meter registry is bound are registered when it is, and the gauges
+ * are removed when an app is undeployed.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ThinJarAppMetrics implements MeterBinder {
+
+	private final List<MeterRegistry> registries = new ArrayList<>();
+
+	private final Map<ThinJarAppWrapper, String> apps = new LinkedHashMap<>();
+
+	private final Map<ThinJarAppWrapper, List<Meter>> meters = new LinkedHashMap<>();
+
+	@Override
+	public synchronized void bindTo(MeterRegistry registry) {
+		this.registries.add(registry);
+		for (Map.Entry<ThinJarAppWrapper, String> app : this.apps.entrySet()) {
+			register(registry, app.getKey(), app.getValue());
+		}
+	}
+
+	/**
+	 * Register gauges for a deployed app.
+	 * @param wrapper the app
+	 * @param name the name of the app
+	 */
+	public synchronized void register(ThinJarAppWrapper wrapper, String name) {
+		if (this.apps.containsKey(wrapper)) {
+			return;
+		}
+		this.apps.put(wrapper, name);
+		for (MeterRegistry registry : this.registries) {
+			register(registry, wrapper, name);
+		}
+	}
+
+	/**
+	 * Remove the gauges for an app (e.g. when it is undeployed), so that neither the
+	 * registries nor this binder keep a reference to it.
+	 * @param wrapper the app
+	 */
+	public synchronized void unregister(ThinJarAppWrapper wrapper) {
+		this.apps.remove(wrapper);
+		List<Meter> meters = this.meters.remove(wrapper);
+		if (meters == null) {
+			return;
+		}
+		for (MeterRegistry registry : this.registries) {
+			for (Meter meter : meters) {
+				registry.remove(meter);
+			}
+		}
+	}
+
+	private void register(MeterRegistry registry, ThinJarAppWrapper wrapper,
+			String name) {
+		Tags tags = Tags.of("app", name, "id", wrapper.getId());
+		gauge(registry, "thin.app.resolution.time", "milliseconds", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getResolutionTime();
+					}
+				});
+		gauge(registry, "thin.app.startup.time", "milliseconds", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getStartupTime();
+					}
+				});
+		gauge(registry, "thin.app.classes.loaded", "classes", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getLoadedClassCount();
+					}
+				});
+		gauge(registry, "thin.app.jars", "jars", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getJarCount();
+					}
+				});
+		gauge(registry, "thin.app.threads.live", "threads", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getThreadCount();
+					}
+				});
+		gauge(registry, "thin.app.metaspace.used", "bytes", tags, wrapper,
+				new ToDoubleFunction<ThinJarAppWrapper>() {
+					@Override
+					public double applyAsDouble(ThinJarAppWrapper value) {
+						return value.getMetaspaceEstimate();
+					}
+				});
+	}
+
+	private void gauge(MeterRegistry registry, String name, String unit, Tags tags,
+			ThinJarAppWrapper wrapper, ToDoubleFunction<ThinJarAppWrapper> function) {
+		Gauge gauge = Gauge.builder(name, wrapper, function).tags(tags).baseUnit(unit)
+				.register(registry);
+		List<Meter> meters = this.meters.get(wrapper);
+		if (meters == null) {
+			meters = new ArrayList<>();
+			this.meters.put(wrapper, meters);
+		}
+		meters.add(gauge);
+	}
+
+}
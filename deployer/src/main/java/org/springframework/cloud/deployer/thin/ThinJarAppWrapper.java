@@ -17,6 +17,8 @@ package org.springframework.cloud.deployer.thin;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -27,6 +29,7 @@ import java.nio.charset.Charset;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.jar.JarFile;
@@ -34,6 +37,7 @@ import java.util.jar.Manifest;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eclipse.aether.graph.Dependency;
 
 import org.springframework.boot.loader.archive.Archive;
 import org.springframework.boot.loader.archive.ExplodedArchive;
@@ -52,20 +56,40 @@ public class ThinJarAppWrapper {
 
 	private static Log logger = LogFactory.getLog(ThinJarAppWrapper.class);
 
+	private static final Object lock = new Object();
+
 	private String id;
 
-	private Object app;
+	private volatile Object app;
 
-	private Object status;
+	private volatile Object status;
 
 	private Resource resource;
 
-	private LaunchState state = LaunchState.unknown;
+	private volatile LaunchState state = LaunchState.unknown;
 
 	private final String name;
 
 	private final String[] profiles;
 
+	private SharedClassLoaders shared;
+
+	private ClassLoaderLeakDetector leaks;
+
+	private volatile long resolutionTime;
+
+	private volatile long startupTime;
+
+	private volatile int jarCount;
+
+	/**
+	 * The thread that is running (launching) the app, if any. Guarded by its own lock
+	 * (not the wrapper) so that the app can be cancelled while it is launching.
+	 */
+	private Thread runner;
+
+	private final Object runnerLock = new Object();
+
 	public ThinJarAppWrapper(Resource resource, String name, String[] profiles) {
 		this.resource = resource;
 		this.name = name;
@@ -79,28 +103,97 @@ public class ThinJarAppWrapper {
 		}
 	}
 
-	public void run(Map<String, String> properties, List<String> args) {
-		if (this.app == null) {
+	/**
+	 * Share the dependencies that this app has in common with other apps using these
+	 * class loaders (optional).
+	 * @param shared the shared class loaders
+	 */
+	void setSharedClassLoaders(SharedClassLoaders shared) {
+		this.shared = shared;
+	}
+
+	/**
+	 * Track the class loader of this app after it is undeployed, to check that it is
+	 * garbage collected (optional).
+	 * @param leaks the leak detector
+	 */
+	void setLeakDetector(ClassLoaderLeakDetector leaks) {
+		this.leaks = leaks;
+	}
+
+	/**
+	 * Mark the app as launching if it is not already running (e.g. while it is waiting
+	 * to be run).
+	 */
+	void launching() {
+		synchronized (this.runnerLock) {
+			if (this.app == null) {
+				this.state = LaunchState.launching;
+			}
+		}
+	}
+
+	public synchronized void run(Map<String, String> properties, List<String> args) {
+		synchronized (this.runnerLock) {
+			if (this.app != null || this.state == LaunchState.cancelled) {
+				// Already running, or undeployed before it got a chance to start
+				return;
+			}
 			this.state = LaunchState.launching;
-			ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-			try {
-				Archive child = getRootArchive();
-				Class<?> cls = createContextRunnerClass(child, args);
-				this.app = cls.newInstance();
-				runContext(getMainClass(child), properties, args.toArray(new String[0]));
-				boolean running = isRunning();
-				this.state = running ? LaunchState.running
-						: (getError() != null ? LaunchState.failed
-								: LaunchState.complete);
+			this.runner = Thread.currentThread();
+		}
+		try {
+			launch(properties, args);
+		}
+		finally {
+			synchronized (this.runnerLock) {
+				this.runner = null;
+				// Don't leave a cancellation behind for the next task on this thread
+				Thread.interrupted();
 			}
-			catch (Exception e) {
-				this.state = LaunchState.failed;
-				logger.error("Cannot deploy " + resource, e);
+		}
+	}
+
+	private void launch(Map<String, String> properties, List<String> args) {
+		ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+		try {
+			Archive child = getRootArchive();
+			long start = System.currentTimeMillis();
+			Class<?> cls = createContextRunnerClass(child, args);
+			this.resolutionTime = System.currentTimeMillis() - start;
+			this.app = cls.newInstance();
+			start = System.currentTimeMillis();
+			runContext(getMainClass(child), properties, args.toArray(new String[0]));
+			this.startupTime = System.currentTimeMillis() - start;
+			boolean cancelled;
+			synchronized (this.runnerLock) {
+				cancelled = this.state == LaunchState.cancelled;
+				if (!cancelled) {
+					this.state = isRunning() ? LaunchState.running
+							: (getError() != null ? LaunchState.failed
+									: LaunchState.complete);
+				}
 			}
-			finally {
-				ClassUtils.overrideThreadContextClassLoader(contextLoader);
+			if (cancelled) {
+				// Undeployed while it was launching
+				close();
+			}
+		}
+		catch (Exception e) {
+			synchronized (this.runnerLock) {
+				if (this.state != LaunchState.cancelled) {
+					this.state = LaunchState.failed;
+				}
+			}
+			logger.error("Cannot deploy " + resource, e);
+			if (this.app == null && this.shared != null) {
+				// Never got as far as close(), so the lease has to be released here
+				this.shared.release(this.id);
 			}
 		}
+		finally {
+			ClassUtils.overrideThreadContextClassLoader(contextLoader);
+		}
 	}
 
 	private Archive getRootArchive() throws IOException {
@@ -119,6 +212,13 @@ public class ThinJarAppWrapper {
 		return (Boolean) ReflectionUtils.invokeMethod(method, this.app);
 	}
 
+	private ThreadGroup getThreadGroup() {
+		Method method = ReflectionUtils.findMethod(this.app.getClass(),
+				"getThreadGroup");
+		return method == null ? null
+				: (ThreadGroup) ReflectionUtils.invokeMethod(method, this.app);
+	}
+
 	private Throwable getError() {
 		if (app == null) {
 			return null;
@@ -141,8 +241,15 @@ public class ThinJarAppWrapper {
 		if (args.contains("--debug")) {
 			// set log level
 		}
-		List<Archive> extracted = archives.resolve(child, name, profiles);
-		ClassLoader loader = createClassLoader(extracted, parent, child);
+		ClassLoader loader;
+		if (this.shared != null) {
+			List<Dependency> dependencies = archives.extract(child, name, profiles);
+			loader = createSharedClassLoader(dependencies, parent, child);
+		}
+		else {
+			List<Archive> extracted = archives.resolve(child, name, profiles);
+			loader = createClassLoader(extracted, parent, child);
+		}
 		ClassUtils.overrideThreadContextClassLoader(loader);
 		reset();
 		Class<?> cls = loader.loadClass(ContextRunner.class.getName());
@@ -152,10 +259,13 @@ public class ThinJarAppWrapper {
 	private void reset() {
 		if (ClassUtils.isPresent(
 				"org.apache.catalina.webresources.TomcatURLStreamHandlerFactory", null)) {
-			setField(ClassUtils.resolveClassName(
-					"org.apache.catalina.webresources.TomcatURLStreamHandlerFactory",
-					null), "instance", null);
-			setField(URL.class, "factory", null);
+			// Global state, and apps can be deployed in parallel
+			synchronized (lock) {
+				setField(ClassUtils.resolveClassName(
+						"org.apache.catalina.webresources.TomcatURLStreamHandlerFactory",
+						null), "instance", null);
+				setField(URL.class, "factory", null);
+			}
 		}
 	}
 
@@ -165,14 +275,29 @@ public class ThinJarAppWrapper {
 		ReflectionUtils.setField(field, null, value);
 	}
 
+	/**
+	 * Stop the app. If it is still launching it is interrupted (and closed when the
+	 * launch returns) without waiting for the launch to finish.
+	 */
 	public void cancel() {
-		if (isRunning()) {
-			this.state = LaunchState.cancelled;
-			close();
+		synchronized (this.runnerLock) {
+			if (this.state == LaunchState.launching) {
+				this.state = LaunchState.cancelled;
+				if (this.runner != null) {
+					this.runner.interrupt();
+				}
+				return;
+			}
+		}
+		synchronized (this) {
+			if (isRunning()) {
+				this.state = LaunchState.cancelled;
+				close();
+			}
 		}
 	}
 
-	private void close() {
+	private synchronized void close() {
 		if (this.app != null) {
 			try {
 				Method method = ReflectionUtils.findMethod(this.app.getClass(), "close");
@@ -187,6 +312,10 @@ public class ThinJarAppWrapper {
 				if (this.app != null) {
 					try {
 						((URLClassLoader) app.getClass().getClassLoader()).close();
+						if (this.leaks != null) {
+							this.leaks.track(this.id, app.getClass().getClassLoader(),
+									getThreadGroup());
+						}
 						this.app = null;
 					}
 					catch (Exception e) {
@@ -195,7 +324,13 @@ public class ThinJarAppWrapper {
 					}
 					finally {
 						this.app = null;
+						if (this.shared != null) {
+							this.shared.release(this.id);
+						}
 						System.gc();
+						if (this.leaks != null) {
+							this.leaks.check();
+						}
 					}
 				}
 			}
@@ -215,12 +350,116 @@ public class ThinJarAppWrapper {
 	}
 
 	public LaunchState getState() {
-		if (!isRunning() && this.app != null) {
+		if (this.state != LaunchState.launching && this.app != null && !isRunning()) {
 			close();
 		}
 		return this.state;
 	}
 
+	/**
+	 * The time taken to resolve the dependencies and create the class loader for the app
+	 * the last time it was run.
+	 * @return the resolution time in milliseconds
+	 */
+	public long getResolutionTime() {
+		return this.resolutionTime;
+	}
+
+	/**
+	 * The time taken to start the application context the last time the app was run.
+	 * @return the startup time in milliseconds
+	 */
+	public long getStartupTime() {
+		return this.startupTime;
+	}
+
+	/**
+	 * The number of entries (jars and directories) in the class path of the app (not
+	 * including any that are shared with other apps).
+	 * @return the number of class path entries
+	 */
+	public int getJarCount() {
+		return this.jarCount;
+	}
+
+	/**
+	 * The number of classes loaded by the class loader of the app (not including any
+	 * that are shared with other apps), or 0 if it is not running.
+	 * @return the number of classes
+	 */
+	public int getLoadedClassCount() {
+		ClassLoader loader = getClassLoader();
+		if (loader instanceof AppClassLoader) {
+			return ((AppClassLoader) loader).getLoadedClassCount();
+		}
+		return 0;
+	}
+
+	/**
+	 * The number of live threads that have the class loader of the app as their context
+	 * class loader.
+	 * @return the number of threads
+	 */
+	public int getThreadCount() {
+		ClassLoader loader = getClassLoader();
+		if (loader == null) {
+			return 0;
+		}
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null) {
+			group = group.getParent();
+		}
+		Thread[] threads = new Thread[group.activeCount() * 2 + 10];
+		int count = group.enumerate(threads, true);
+		int result = 0;
+		for (int i = 0; i < count; i++) {
+			if (threads[i].getContextClassLoader() == loader) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * An estimate of the metaspace (or permgen) used by the classes of the app: its share
+	 * of the total, in proportion to the number of classes it has loaded.
+	 * @return the estimated memory in bytes
+	 */
+	public long getMetaspaceEstimate() {
+		int classes = getLoadedClassCount();
+		if (classes == 0) {
+			return 0;
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ("Metaspace".equals(pool.getName()) || pool.getName().contains("Perm Gen")) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		int total = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		return total == 0 ? 0 : used * classes / total;
+	}
+
+	/**
+	 * The runtime metrics of the app as status attributes.
+	 * @return a map of metric name to value
+	 */
+	public Map<String, String> getAttributes() {
+		Map<String, String> attributes = new LinkedHashMap<>();
+		attributes.put("resolution.time", String.valueOf(getResolutionTime()));
+		attributes.put("startup.time", String.valueOf(getStartupTime()));
+		attributes.put("classes.loaded", String.valueOf(getLoadedClassCount()));
+		attributes.put("jars", String.valueOf(getJarCount()));
+		attributes.put("threads.live", String.valueOf(getThreadCount()));
+		attributes.put("metaspace.used", String.valueOf(getMetaspaceEstimate()));
+		return attributes;
+	}
+
+	private ClassLoader getClassLoader() {
+		Object app = this.app;
+		return app == null ? null : app.getClass().getClassLoader();
+	}
+
 	@Override
 	public String toString() {
 		return "Wrapper [id=" + id + ", resource=" + resource + ", state=" + state + "]";
@@ -259,8 +498,20 @@ public class ThinJarAppWrapper {
 
 	private ClassLoader createClassLoader(List<Archive> archives, Archive... roots) {
 		URL[] urls = getUrls(archives, roots);
-		URLClassLoader classLoader = new URLClassLoader(urls,
+		this.jarCount = urls.length;
+		URLClassLoader classLoader = new AppClassLoader(urls,
+				getClass().getClassLoader().getParent());
+		Thread.currentThread().setContextClassLoader(classLoader);
+		return classLoader;
+	}
+
+	private ClassLoader createSharedClassLoader(List<Dependency> dependencies,
+			Archive... roots) {
+		SharedClassLoaders.Lease lease = this.shared.acquire(this.id, dependencies,
 				getClass().getClassLoader().getParent());
+		URL[] urls = addRoots(new ArrayList<URL>(lease.getUrls()), roots);
+		this.jarCount = urls.length;
+		URLClassLoader classLoader = new AppClassLoader(urls, lease.getParent());
 		Thread.currentThread().setContextClassLoader(classLoader);
 		return classLoader;
 	}
@@ -271,6 +522,15 @@ public class ThinJarAppWrapper {
 			for (Archive archive : archives) {
 				urls.add(archive.getUrl());
 			}
+			return addRoots(urls, roots);
+		}
+		catch (MalformedURLException e) {
+			throw new IllegalStateException("Cannot create URL", e);
+		}
+	}
+
+	private URL[] addRoots(List<URL> urls, Archive... roots) {
+		try {
 			for (int i = 0; i < roots.length; i++) {
 				urls.add(i, roots[i].getUrl());
 			}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ClassLoaderLeakDetectorTests {
+
+	private ClassLoaderLeakDetector detector = new ClassLoaderLeakDetector();
+
+	private CountDownLatch latch = new CountDownLatch(1);
+
+	@After
+	public void close() {
+		latch.countDown();
+	}
+
+	@Test
+	public void collected() throws Exception {
+		detector.track("app", new URLClassLoader(new URL[0]));
+		for (int i = 0; i < 10 && detector.getTrackedCount() > 0; i++) {
+			System.gc();
+			Thread.sleep(50L);
+		}
+		assertThat(detector.getTrackedCount()).isEqualTo(0);
+		assertThat(detector.check()).isEmpty();
+	}
+
+	@Test
+	public void leakedByThread() throws Exception {
+		URLClassLoader loader = new URLClassLoader(new URL[0]);
+		Thread thread = thread(loader);
+		detector.track("app", loader);
+		loader = null;
+		System.gc();
+		assertThat(detector.check()).isEmpty();
+		System.gc();
+		List<ClassLoaderLeakDetector.Leak> leaks = detector.check();
+		assertThat(leaks).hasSize(1);
+		assertThat(leaks.get(0).getId()).isEqualTo("app");
+		assertThat(leaks.get(0).getRoots())
+				.contains("Thread with context loader: " + thread.getName());
+	}
+
+	@Test
+	public void cleanup() throws Exception {
+		URLClassLoader loader = new URLClassLoader(new URL[0]);
+		Thread thread = thread(loader);
+		detector.setCleanup(true);
+		detector.track("app", loader);
+		assertThat(thread.getContextClassLoader()).isSameAs(loader.getParent());
+		assertThat(detector.roots(loader)).isEmpty();
+	}
+
+	@Test
+	public void cleanupThreadInAppGroup() throws Exception {
+		URLClassLoader loader = new URLClassLoader(new URL[0]);
+		ThreadGroup group = new ThreadGroup("app");
+		Thread thread = thread(group, null);
+		assertThat(detector.roots(loader, group))
+				.contains("Thread started by app: " + thread.getName());
+		detector.setCleanup(true);
+		detector.track("app", loader, group);
+		thread.join(10000);
+		assertThat(thread.isAlive()).isFalse();
+	}
+
+	private Thread thread(ClassLoader loader) {
+		return thread(null, loader);
+	}
+
+	private Thread thread(ThreadGroup group, ClassLoader loader) {
+		Thread thread = new Thread(group, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "leaky");
+		thread.setDaemon(true);
+		if (loader != null) {
+			thread.setContextClassLoader(loader);
+		}
+		thread.start();
+		return thread;
+	}
+
+}
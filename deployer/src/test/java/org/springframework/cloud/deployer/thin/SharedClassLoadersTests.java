@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.util.FileCopyUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class SharedClassLoadersTests {
+
+	private static final File DB = new File(
+			"src/test/resources/app-with-db-in-lib-properties.jar");
+
+	private static final File CLOUD = new File(
+			"src/test/resources/app-with-cloud-in-lib-properties.jar");
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private SharedClassLoaders shared = new SharedClassLoaders();
+
+	private ClassLoader parent = getClass().getClassLoader();
+
+	@Test
+	public void nothingShared() throws Exception {
+		Dependency db = dependency("db", "1.0", DB);
+		SharedClassLoaders.Lease lease = shared.acquire("one", Arrays.asList(db),
+				parent);
+		assertThat(lease.getParent()).isSameAs(parent);
+		assertThat(lease.getUrls()).containsExactly(url(db));
+		assertThat(shared.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void commonDependencyShared() throws Exception {
+		Dependency db = dependency("db", "1.0", DB);
+		Dependency cloud = dependency("cloud", "1.0", CLOUD);
+		shared.acquire("one", Arrays.asList(db), parent);
+		SharedClassLoaders.Lease lease = shared.acquire("two", Arrays.asList(db, cloud),
+				parent);
+		assertThat(lease.getParent()).isNotSameAs(parent);
+		assertThat(lease.getParent().getParent()).isSameAs(parent);
+		assertThat(lease.getUrls()).containsExactly(url(cloud));
+		assertThat(shared.size()).isEqualTo(1);
+		SharedClassLoaders.Lease other = shared.acquire("three",
+				Arrays.asList(cloud, db), parent);
+		assertThat(other.getParent()).isSameAs(lease.getParent());
+		assertThat(shared.size()).isEqualTo(1);
+		shared.release("two");
+		assertThat(shared.size()).isEqualTo(1);
+		shared.release("three");
+		assertThat(shared.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void differentVersionsNotShared() throws Exception {
+		shared.acquire("one", Arrays.asList(dependency("db", "1.0", DB)), parent);
+		SharedClassLoaders.Lease lease = shared.acquire("two",
+				Arrays.asList(dependency("db", "2.0", DB)), parent);
+		assertThat(lease.getParent()).isSameAs(parent);
+		assertThat(shared.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void dependencyWithMediatedVersionNotShared() throws Exception {
+		// Both apps have the same databind, but not the same annotations, so databind
+		// cannot go in a parent class loader where it would not see them
+		Dependency core = dependency("core", "1.0", DB);
+		Dependency databind = dependency("databind", "1.0", DB, "core", "annotations");
+		Dependency annotations = dependency("annotations", "1.0", CLOUD);
+		Dependency newer = dependency("annotations", "2.0", CLOUD);
+		shared.acquire("one", Arrays.asList(databind, annotations, core), parent);
+		SharedClassLoaders.Lease lease = shared.acquire("two",
+				Arrays.asList(databind, newer, core), parent);
+		assertThat(shared.size()).isEqualTo(1);
+		assertThat(lease.getUrls()).containsExactly(url(databind), url(newer));
+	}
+
+	@Test
+	public void dependencyNotSharedIfNewAppHasMore() throws Exception {
+		// The third app has an (optional) dependency of the shared library, which the
+		// library would not be able to see from the shared class loader
+		Dependency lib = dependency("lib", "1.0", DB, "optional");
+		Dependency optional = dependency("optional", "1.0", CLOUD);
+		shared.acquire("one", Arrays.asList(lib), parent);
+		shared.acquire("two", Arrays.asList(lib), parent);
+		assertThat(shared.size()).isEqualTo(1);
+		SharedClassLoaders.Lease lease = shared.acquire("three",
+				Arrays.asList(lib, optional), parent);
+		assertThat(lease.getParent()).isSameAs(parent);
+		assertThat(lease.getUrls()).containsExactly(url(lib), url(optional));
+	}
+
+	@Test
+	public void dependencyWithoutPomNotShared() throws Exception {
+		Dependency db = new Dependency(
+				new DefaultArtifact("com.example:db:1.0").setFile(DB), "runtime");
+		shared.acquire("one", Arrays.asList(db), parent);
+		SharedClassLoaders.Lease lease = shared.acquire("two", Arrays.asList(db),
+				parent);
+		assertThat(lease.getParent()).isSameAs(parent);
+		assertThat(shared.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void directoriesNotShared() throws Exception {
+		File classes = new File("target/test-classes");
+		Dependency dependency = new Dependency(
+				new DefaultArtifact("com.example:classes:1.0").setFile(classes),
+				"runtime");
+		shared.acquire("one", Arrays.asList(dependency), parent);
+		SharedClassLoaders.Lease lease = shared.acquire("two", Arrays.asList(dependency),
+				parent);
+		assertThat(lease.getParent()).isSameAs(parent);
+		assertThat(lease.getUrls()).containsExactly(classes.toURI().toURL());
+	}
+
+	/**
+	 * A dependency in a repository, with a copy of the content and a pom that declares
+	 * the other (<code>com.example</code>) artifacts that it depends on.
+	 */
+	private Dependency dependency(String name, String version, File content,
+			String... dependencies) throws Exception {
+		File directory = new File(temp.getRoot(),
+				"repository/com/example/" + name + "/" + version);
+		directory.mkdirs();
+		File file = new File(directory, name + "-" + version + ".jar");
+		FileCopyUtils.copy(content, file);
+		StringBuilder pom = new StringBuilder("<project>");
+		pom.append("<modelVersion>4.0.0</modelVersion><groupId>com.example</groupId>");
+		pom.append("<artifactId>" + name + "</artifactId>"
+				+ "<version>" + version + "</version><dependencies>");
+		for (String dependency : dependencies) {
+			pom.append("<dependency><groupId>${project.groupId}</groupId><artifactId>"
+					+ dependency + "</artifactId><optional>true</optional></dependency>");
+		}
+		pom.append("</dependencies></project>");
+		FileCopyUtils.copy(pom.toString().getBytes("UTF-8"),
+				new File(directory, name + "-" + version + ".pom"));
+		return new Dependency(
+				new DefaultArtifact("com.example:" + name + ":" + version).setFile(file),
+				"runtime");
+	}
+
+	private URL url(Dependency dependency) throws Exception {
+		return dependency.getArtifact().getFile().toURI().toURL();
+	}
+
+}
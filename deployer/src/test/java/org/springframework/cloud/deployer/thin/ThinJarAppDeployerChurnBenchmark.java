@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.springframework.cloud.deployer.spi.app.DeploymentState;
+import org.springframework.cloud.deployer.spi.core.AppDefinition;
+import org.springframework.cloud.deployer.spi.core.AppDeploymentRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.StringUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Deploys and undeploys the test apps over and over again and reports the latencies and
+ * the memory used, so that regressions (especially leaks) can be spotted by comparing
+ * the reports from different versions. Not run with the normal tests: use the "churn"
+ * profile (or the main method). Configured with system properties:
+ *
+ * <ul>
+ * <li>churn.apps: comma separated paths of the apps to deploy (default
+ * "src/test/resources/apps/app,src/test/resources/apps/props")</li>
+ * <li>churn.cycles: the number of cycles (each app deployed and undeployed once) to
+ * measure (default 1000)</li>
+ * <li>churn.warmup: the number of cycles to run before measuring (default 50)</li>
+ * <li>churn.sample: the number of cycles between memory samples (default 100)</li>
+ * <li>churn.output: the directory for the report (default "target/churn")</li>
+ * <li>churn.version: a label for the report (default "snapshot")</li>
+ * <li>churn.baseline: a report from a previous run to compare with (optional)</li>
+ * </ul>
+ *
+ * The report is a sorted properties file (easy to diff) plus a CSV file with the memory
+ * samples (to see trends).
+ *
+ * @author Dave Syer
+ *
+ */
+public class ThinJarAppDeployerChurnBenchmark {
+
+	private final ThinJarAppDeployer deployer = new ThinJarAppDeployer();
+
+	private final List<String> apps = Arrays
+			.asList(StringUtils.commaDelimitedListToStringArray(System.getProperty(
+					"churn.apps",
+					"src/test/resources/apps/app,src/test/resources/apps/props")));
+
+	private final int cycles = Integer.getInteger("churn.cycles", 1000);
+
+	private final int warmup = Integer.getInteger("churn.warmup", 50);
+
+	private final int sample = Integer.getInteger("churn.sample", 100);
+
+	private final File output = new File(
+			System.getProperty("churn.output", "target/churn"));
+
+	private final String version = System.getProperty("churn.version", "snapshot");
+
+	private final String baseline = System.getProperty("churn.baseline");
+
+	public static void main(String[] args) throws Exception {
+		new ThinJarAppDeployerChurnBenchmark().churn();
+	}
+
+	@Test
+	public void churn() throws Exception {
+		for (int i = 0; i < this.warmup; i++) {
+			cycle(null, null);
+		}
+		List<long[]> samples = new ArrayList<>();
+		samples.add(sample(0));
+		long[] deploys = new long[this.cycles * this.apps.size()];
+		long[] undeploys = new long[deploys.length];
+		for (int i = 0; i < this.cycles; i++) {
+			cycle(deploys, undeploys, i * this.apps.size());
+			if ((i + 1) % this.sample == 0 || i == this.cycles - 1) {
+				samples.add(sample(i + 1));
+			}
+		}
+		Map<String, String> report = report(deploys, undeploys, samples);
+		write(report, samples);
+		if (this.baseline != null) {
+			compare(report, load(new File(this.baseline)));
+		}
+	}
+
+	private void cycle(long[] deploys, long[] undeploys) {
+		cycle(deploys, undeploys, 0);
+	}
+
+	private void cycle(long[] deploys, long[] undeploys, int offset) {
+		for (int i = 0; i < this.apps.size(); i++) {
+			String path = this.apps.get(i);
+			long start = System.nanoTime();
+			String id = this.deployer.deploy(request(path));
+			long deployed = System.nanoTime();
+			assertThat(this.deployer.status(id).getState())
+					.isEqualTo(DeploymentState.deployed);
+			long check = System.nanoTime();
+			this.deployer.undeploy(id);
+			long undeployed = System.nanoTime();
+			if (deploys != null) {
+				deploys[offset + i] = deployed - start;
+				undeploys[offset + i] = undeployed - check;
+			}
+		}
+	}
+
+	private AppDeploymentRequest request(String path) {
+		File file = new File(path);
+		AppDefinition definition = new AppDefinition(file.getName(),
+				Collections.<String, String>emptyMap());
+		return new AppDeploymentRequest(definition, new FileSystemResource(file),
+				Collections.<String, String>emptyMap(), Collections.<String>emptyList());
+	}
+
+	/**
+	 * Measure the memory after a full GC.
+	 * @return the cycle, heap used, metaspace used, loaded classes and leaked class
+	 * loaders
+	 */
+	private long[] sample(int cycle) {
+		// checkLeaks() triggers a GC; the second call reports everything that survived
+		this.deployer.checkLeaks();
+		int leaked = this.deployer.checkLeaks().size();
+		long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		long metaspace = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ("Metaspace".equals(pool.getName()) || pool.getName().contains("Perm Gen")) {
+				metaspace += pool.getUsage().getUsed();
+			}
+		}
+		long classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		return new long[] { cycle, heap, metaspace, classes, leaked };
+	}
+
+	private Map<String, String> report(long[] deploys, long[] undeploys,
+			List<long[]> samples) {
+		Map<String, String> report = new TreeMap<>();
+		report.put("version", this.version);
+		report.put("apps", StringUtils.collectionToCommaDelimitedString(this.apps));
+		report.put("cycles", String.valueOf(this.cycles));
+		Arrays.sort(deploys);
+		Arrays.sort(undeploys);
+		for (double percentile : new double[] { 50, 90, 99, 100 }) {
+			String key = percentile == 100 ? "max" : "p" + (int) percentile;
+			report.put("deploy." + key + ".ms", millis(percentile(deploys, percentile)));
+			report.put("undeploy." + key + ".ms",
+					millis(percentile(undeploys, percentile)));
+		}
+		long[] first = samples.get(0);
+		long[] last = samples.get(samples.size() - 1);
+		String[] names = { "cycle", "heap.used", "metaspace.used", "classes.loaded",
+				"loaders.leaked" };
+		for (int i = 1; i < names.length; i++) {
+			report.put(names[i] + ".start", String.valueOf(first[i]));
+			report.put(names[i] + ".end", String.valueOf(last[i]));
+			if (last[0] > first[0]) {
+				report.put(names[i] + ".growth.per1000", String
+						.valueOf((last[i] - first[i]) * 1000 / (last[0] - first[0])));
+			}
+		}
+		return report;
+	}
+
+	private long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1000000.);
+	}
+
+	private void write(Map<String, String> report, List<long[]> samples)
+			throws IOException {
+		this.output.mkdirs();
+		File file = new File(this.output, "churn-" + this.version + ".properties");
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			for (Map.Entry<String, String> entry : report.entrySet()) {
+				writer.println(entry.getKey() + "=" + entry.getValue());
+			}
+		}
+		try (PrintWriter writer = new PrintWriter(
+				new File(this.output, "churn-" + this.version + ".csv"), "UTF-8")) {
+			writer.println("cycle,heap.used,metaspace.used,classes.loaded,loaders.leaked");
+			for (long[] sample : samples) {
+				writer.println(StringUtils.arrayToCommaDelimitedString(
+						new Object[] { sample[0], sample[1], sample[2], sample[3],
+								sample[4] }));
+			}
+		}
+		System.out.println("Churn report: " + file);
+		for (Map.Entry<String, String> entry : report.entrySet()) {
+			System.out.println("  " + entry.getKey() + "=" + entry.getValue());
+		}
+	}
+
+	private Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			properties.load(stream);
+		}
+		return properties;
+	}
+
+	private void compare(Map<String, String> report, Properties baseline)
+			throws IOException {
+		File file = new File(this.output, "churn-" + this.version + "-vs-"
+				+ baseline.getProperty("version", "baseline") + ".txt");
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			for (Map.Entry<String, String> entry : report.entrySet()) {
+				String previous = baseline.getProperty(entry.getKey());
+				if (previous == null || !isNumber(previous)
+						|| !isNumber(entry.getValue())) {
+					continue;
+				}
+				double before = Double.valueOf(previous);
+				double after = Double.valueOf(entry.getValue());
+				String change = before == 0 ? ""
+						: String.format(Locale.ROOT, " (%+.1f%%)",
+								(after - before) * 100 / before);
+				writer.println(entry.getKey() + ": " + previous + " -> "
+						+ entry.getValue() + change);
+			}
+		}
+		System.out.println("Churn comparison: " + file);
+	}
+
+	private boolean isNumber(String value) {
+		try {
+			Double.valueOf(value);
+			return true;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+}
@@ -19,11 +19,15 @@ package org.springframework.cloud.deployer.thin;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import org.springframework.cloud.deployer.spi.app.AppInstanceStatus;
 import org.springframework.cloud.deployer.spi.app.DeploymentState;
 import org.springframework.cloud.deployer.spi.core.AppDefinition;
 import org.springframework.cloud.deployer.spi.core.AppDeploymentRequest;
@@ -56,6 +60,21 @@ public class ThinJarAppDeployerTests {
 		deployer.undeploy(deployed);
 	}
 
+	@Test
+	public void appAttributes() throws Exception {
+		String deployed = deploy("app-with-db-in-lib-properties.jar");
+		AppInstanceStatus instance = deployer.status(deployed).getInstances().values()
+				.iterator().next();
+		Map<String, String> attributes = instance.getAttributes();
+		assertThat(Long.valueOf(attributes.get("startup.time"))).isGreaterThan(0);
+		assertThat(Integer.valueOf(attributes.get("classes.loaded"))).isGreaterThan(0);
+		assertThat(Integer.valueOf(attributes.get("jars"))).isGreaterThan(1);
+		assertThat(Long.valueOf(attributes.get("metaspace.used"))).isGreaterThan(0);
+		assertThat(attributes).containsKeys("resolution.time", "threads.live");
+		deployer.undeploy(deployed);
+		assertThat(instance.getAttributes()).containsEntry("classes.loaded", "0");
+	}
+
 	@Test
 	public void appFromTargetClasses() throws Exception {
 		String deployed = deploy(new FileSystemResource("../samples/other/target/classes"), "other");
@@ -95,6 +114,54 @@ public class ThinJarAppDeployerTests {
 		deployer.undeploy(second);
 	}
 
+	@Test
+	public void twoAppsSharingDependencies() throws Exception {
+		String single = deploy("app-with-cloud-in-lib-properties.jar");
+		int jars = jars(deployer, single);
+		deployer.undeploy(single);
+		ThinJarAppDeployer shared = new ThinJarAppDeployer();
+		shared.setShareDependencies(true);
+		String first = deploy(shared, "app-with-db-in-lib-properties.jar");
+		String second = deploy(shared, "app-with-cloud-in-lib-properties.jar");
+		// Deployment is blocking so it either failed or succeeded.
+		assertThat(shared.status(first).getState()).isEqualTo(DeploymentState.deployed);
+		assertThat(shared.status(second).getState())
+				.isEqualTo(DeploymentState.deployed);
+		// Some of the libraries of the second app are in the shared parent
+		assertThat(jars(shared, second)).isLessThan(jars);
+		shared.undeploy(first);
+		shared.undeploy(second);
+	}
+
+	@Test
+	public void twoAppsAsync() throws Exception {
+		Future<String> first = deployAsync("app-with-db-in-lib-properties.jar");
+		Future<String> second = deployAsync("app-with-cloud-in-lib-properties.jar");
+		String id = first.get(120, TimeUnit.SECONDS);
+		assertThat(deployer.status(id).getState()).isEqualTo(DeploymentState.deployed);
+		String other = second.get(120, TimeUnit.SECONDS);
+		assertThat(deployer.status(other).getState())
+				.isEqualTo(DeploymentState.deployed);
+		deployer.undeploy(id);
+		deployer.undeploy(other);
+	}
+
+	@Test
+	public void undeployWhileLaunching() throws Exception {
+		Future<String> future = deployAsync("app-with-cloud-in-lib-properties.jar");
+		String id = new ThinJarAppWrapper(
+				new FileSystemResource(
+						"src/test/resources/app-with-cloud-in-lib-properties.jar"),
+				"app", new String[0]).getId();
+		long start = System.currentTimeMillis();
+		deployer.undeploy(id);
+		// Does not wait for the launch to finish
+		assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+		future.get(120, TimeUnit.SECONDS);
+		assertThat(deployer.status(id).getState())
+				.isEqualTo(DeploymentState.undeployed);
+	}
+
 	@Test
 	public void appFromJarFileFails() throws Exception {
 		String deployed = deploy("app-with-cloud-in-lib-properties.jar", "--fail");
@@ -108,13 +175,32 @@ public class ThinJarAppDeployerTests {
 		return deploy(resource, jarName, args);
 	}
 	
+	Future<String> deployAsync(String jarName, String... args) {
+		Resource resource = new FileSystemResource("src/test/resources/" + jarName);
+		return deployer.deployAsync(request(resource, jarName, args));
+	}
+
 	String deploy(Resource resource, String name, String... args) {
+		return deployer.deploy(request(resource, name, args));
+	}
+
+	private String deploy(ThinJarAppDeployer deployer, String jarName) {
+		Resource resource = new FileSystemResource("src/test/resources/" + jarName);
+		return deployer.deploy(request(resource, jarName));
+	}
+
+	private int jars(ThinJarAppDeployer deployer, String id) {
+		AppInstanceStatus instance = deployer.status(id).getInstances().values()
+				.iterator().next();
+		return Integer.valueOf(instance.getAttributes().get("jars"));
+	}
+
+	private AppDeploymentRequest request(Resource resource, String name,
+			String... args) {
 		AppDefinition definition = new AppDefinition(name,
 				Collections.<String, String>emptyMap());
-		AppDeploymentRequest request = new AppDeploymentRequest(definition, resource,
+		return new AppDeploymentRequest(definition, resource,
 				Collections.<String, String>emptyMap(), Arrays.asList(args));
-		String deployed = deployer.deploy(request);
-		return deployed;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.deployer.thin;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import org.springframework.core.io.FileSystemResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ThinJarAppMetricsTests {
+
+	private ThinJarAppMetrics metrics = new ThinJarAppMetrics();
+
+	private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private ThinJarAppWrapper wrapper = new ThinJarAppWrapper(
+			new FileSystemResource("src/test/resources/app-with-db-in-lib-properties.jar"),
+			"app", new String[0]);
+
+	@Test
+	public void registeredAfterBind() throws Exception {
+		this.metrics.bindTo(this.registry);
+		this.metrics.register(this.wrapper, "app");
+		assertThat(this.registry.find("thin.app.jars").tag("app", "app").gauge())
+				.isNotNull();
+	}
+
+	@Test
+	public void registeredBeforeBind() throws Exception {
+		this.metrics.register(this.wrapper, "app");
+		this.metrics.bindTo(this.registry);
+		assertThat(this.registry.find("thin.app.jars").tag("app", "app").gauge())
+				.isNotNull();
+	}
+
+	@Test
+	public void unregistered() throws Exception {
+		this.metrics.bindTo(this.registry);
+		this.metrics.register(this.wrapper, "app");
+		this.metrics.unregister(this.wrapper);
+		assertThat(this.registry.getMeters()).isEmpty();
+		// Not registered again with a new registry
+		SimpleMeterRegistry other = new SimpleMeterRegistry();
+		this.metrics.bindTo(other);
+		assertThat(other.getMeters()).isEmpty();
+	}
+
+}
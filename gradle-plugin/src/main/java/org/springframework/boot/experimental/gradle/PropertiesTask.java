@@ -17,7 +17,13 @@
 package org.springframework.boot.experimental.gradle;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Properties;
 
 import org.gradle.api.DefaultTask;
@@ -36,6 +42,9 @@ import org.springframework.util.StringUtils;
  * some time on startup to have the dependencies pre-computed, but it makes it less
  * flexible, so this task is optional. If you enable it, you probably want to make it a
  * dependency of the main java plugin task so that it runs automatically on build.
+ * Optionally it also generates a lock file (e.g. <code>thin.lock</code>) with the path in
+ * a Maven repository, size and checksum of each dependency, so that the launcher can
+ * find them without building a model.
  *
  * @author Andy Wilkinson
  * @author Dave Syer
@@ -55,6 +64,9 @@ public class PropertiesTask extends DefaultTask {
 	@Input
 	private String profile;
 
+	@Input
+	private boolean lock;
+
 	@TaskAction
 	public void generate() {
 		Properties properties = getThinProperties(configuration);
@@ -63,6 +75,9 @@ public class PropertiesTask extends DefaultTask {
 			output.mkdirs();
 			properties.store(new FileOutputStream(new File(output, filename)),
 					"Generated by thin gradle plugin");
+			if (lock && configuration != null) {
+				writeLock(configuration, new File(output, getFileName(".lock")));
+			}
 		}
 		catch (Exception e) {
 			throw new TaskExecutionException(this, e);
@@ -83,6 +98,54 @@ public class PropertiesTask extends DefaultTask {
 		return properties;
 	}
 
+	private void writeLock(Configuration configuration, File file) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		builder.append("# Generated by thin gradle plugin\n");
+		builder.append("# coordinates path size sha256 repository\n");
+		for (ResolvedArtifact artifact : configuration.getResolvedConfiguration()
+				.getResolvedArtifacts()) {
+			// The source repository is not available from Gradle
+			builder.append(coordinates(artifact, true)).append(" ")
+					.append(path(artifact)).append(" ")
+					.append(artifact.getFile().length()).append(" ")
+					.append(sha256(artifact.getFile())).append(" -\n");
+		}
+		try (OutputStream stream = new FileOutputStream(file)) {
+			stream.write(builder.toString().getBytes("UTF-8"));
+		}
+	}
+
+	private String path(ResolvedArtifact artifact) {
+		// The path in a Maven repository
+		ModuleVersionIdentifier id = artifact.getModuleVersion().getId();
+		String version = id.getVersion();
+		String classifier = artifact.getClassifier();
+		return id.getGroup().replace(".", "/") + "/" + id.getName() + "/"
+				+ version.replaceAll("-[0-9]{8}\\.[0-9]{6}-[0-9]+$", "-SNAPSHOT") + "/"
+				+ id.getName() + "-" + version
+				+ (StringUtils.hasText(classifier) ? "-" + classifier : "") + "."
+				+ artifact.getExtension();
+	}
+
+	private String sha256(File file) throws IOException {
+		try (InputStream stream = new FileInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, count);
+			}
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest()) {
+				builder.append(String.format("%02x", b & 0xff));
+			}
+			return builder.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("No SHA-256 digest available", e);
+		}
+	}
+
 	private String key(ResolvedArtifact dependency, Properties props) {
 		String key = dependency.getModuleVersion().getId().getName();
 		if (!StringUtils.isEmpty(dependency.getClassifier())) {
@@ -110,8 +173,12 @@ public class PropertiesTask extends DefaultTask {
 	}
 
 	private String getFileName() {
+		return getFileName(".properties");
+	}
+
+	private String getFileName(String extension) {
 		String profile = StringUtils.hasText(this.profile) ? "-" + this.profile : "";
-		return this.name + profile + ".properties";
+		return this.name + profile + extension;
 	}
 
 	/**
@@ -150,4 +217,13 @@ public class PropertiesTask extends DefaultTask {
 	public void setProfile(String profile) {
 		this.profile = profile;
 	}
+
+	/**
+	 * Flag to generate a lock file next to the properties file (default false).
+	 *
+	 * @param lock the flag value
+	 */
+	public void setLock(boolean lock) {
+		this.lock = lock;
+	}
 }
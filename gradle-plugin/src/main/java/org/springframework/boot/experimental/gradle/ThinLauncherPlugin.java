@@ -18,6 +18,7 @@ package org.springframework.boot.experimental.gradle;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +55,11 @@ import org.springframework.util.StringUtils;
  * task).</li>
  * <li>"thinResolvePrepare": copies the project jar to the "root" directory preparing for
  * the resolution. The same naming convention applies to multiple jar tasks.</li>
+ * <li>"thinCds": runs the project jar from the "root" directory once in training mode
+ * (after "thinResolve") to create a dynamic AppCDS archive (Java 13 or better), and a Java
+ * argument file in "root/thin/cds" with the JVM flags to use it. The app is stopped after
+ * "thin.cds.training" seconds (default 60) if it doesn't exit on its own. The same naming
+ * convention applies to multiple jar tasks.</li>
  * <li>"thinProperties": calculates thin.properties and puts them in the main build
  * output.</li>
  * <li>"thinPom": runs automatically if you apply the Maven plugin. Generates a pom.xml
@@ -72,6 +78,7 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 			public void execute(Jar jar) {
 				createCopyTask(project, jar);
 				createResolveTask(project, jar);
+				createCdsTask(project, jar);
 				createPropertiesTask(project);
 				createPomTask(project);
 			}
@@ -264,6 +271,46 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 				});
 	}
 
+	private void createCdsTask(final Project project, final Jar jar) {
+		create(project.getTasks(), "thinCds" + suffix(jar), Exec.class,
+				new Action<Exec>() {
+					@Override
+					public void execute(final Exec exec) {
+						final String resolveTask = "thinResolve" + suffix(jar);
+						exec.dependsOn(resolveTask);
+						exec.doFirst(new Action<Task>() {
+							@Override
+							public void execute(Task task) {
+								Jar thinJar = (Jar) project.getTasks()
+										.findByName("thinJar" + suffix(jar));
+								if (thinJar == null) {
+									thinJar = (Jar) project.getTasks().getByName("jar");
+								}
+								String jarName = thinJar.getArchiveName();
+								String name = StringUtils.stripFilenameExtension(jarName);
+								exec.setWorkingDir(
+										new File(project.getBuildDir(), "thin/root"));
+								exec.setCommandLine(Jvm.current().getJavaExecutable());
+								List<String> args = new ArrayList<>(Arrays.asList(
+										"-Dthin.root=.", "-Dthin.dryrun", "-jar", jarName,
+										"--thin.cds=true",
+										"--thin.cds.training="
+												+ getCdsTraining(project),
+										"--thin.exec=thin/cds/" + name + ".args"));
+								String thinRepo = getThinRepo(project);
+								if (thinRepo != null) {
+									args.add(1, "-Dthin.repo=" + thinRepo);
+								}
+								exec.args(args);
+							}
+						});
+						exec.setDescription(
+								"Creates an AppCDS archive for the thin jar in the root directory"
+										+ " (Java 13 or better).");
+					}
+				});
+	}
+
 	private String getThinRepo(Project project) {
 		if (System.getProperty("thin.repo") != null) {
 			return System.getProperty("thin.repo");
@@ -278,6 +325,18 @@ public class ThinLauncherPlugin implements Plugin<Project> {
 		return null;
 	}
 
+	private String getCdsTraining(Project project) {
+		// Gradle's Exec task has no timeout, so the launcher has to stop the app
+		if (System.getProperty("thin.cds.training") != null) {
+			return System.getProperty("thin.cds.training");
+		}
+		Map<String, ?> properties = project.getProperties();
+		if (properties != null && properties.get("thin.cds.training") != null) {
+			return properties.get("thin.cds.training").toString();
+		}
+		return "60";
+	}
+
 	private String suffix(Jar jar) {
 		String name = jar.getName();
 		return "jar".equals(name) || "bootJar".equals(name) ? ""
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -41,6 +43,8 @@ import org.springframework.core.io.UrlResource;
  */
 public class ArchiveUtils {
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	public static Archive getArchive(Class<?> cls) {
 		URL location = cls.getProtectionDomain().getCodeSource().getLocation();
 		return getArchive(location.toString());
@@ -182,6 +186,24 @@ public class ArchiveUtils {
 		return locateFiles(result);
 	}
 
+	/**
+	 * Compute a digest of some files (their paths, sizes and timestamps) and a seed
+	 * string, suitable for use as a cache key that changes if any of the files change.
+	 * @param seed a string to include in the digest
+	 * @param files the files
+	 * @return a hex encoded digest
+	 */
+	public static String fingerprint(String seed, List<File> files) {
+		MessageDigest digest = ClasspathCache.digest();
+		digest.update(seed.getBytes(UTF_8));
+		for (File file : files) {
+			digest.update(file.getAbsolutePath().getBytes(UTF_8));
+			digest.update(
+					(":" + file.length() + ":" + file.lastModified()).getBytes(UTF_8));
+		}
+		return ClasspathCache.hex(digest.digest());
+	}
+
 	private static URL[] locateFiles(URL[] urls) {
 		for (int i = 0; i < urls.length; i++) {
 			urls[i] = jarFile(urls[i]);
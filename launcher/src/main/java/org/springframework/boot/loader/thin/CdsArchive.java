@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * A dynamic AppCDS archive for a specific class path. The archive lives in a directory
+ * (usually under <code>thin.root</code>) and its name is a digest of the class path
+ * (including the size and timestamp of every entry) and the JVM version, because the
+ * JVM refuses to map an archive if any of those change. Requires Java 13 or better
+ * (for <code>-XX:ArchiveClassesAtExit</code>).
+ *
+ * @author Dave Syer
+ *
+ */
+public class CdsArchive {
+
+	private static final Logger log = LoggerFactory.getLogger(CdsArchive.class);
+
+	private final File file;
+
+	private File temp;
+
+	public CdsArchive(File directory, String classpath) {
+		this.file = new File(directory, key(classpath) + ".jsa");
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public boolean exists() {
+		return this.file.exists();
+	}
+
+	/**
+	 * The JVM options needed to use the archive if it exists, or to create it when the
+	 * JVM exits if it does not.
+	 * @return the JVM options
+	 */
+	public List<String> getJvmOptions() {
+		if (!isSupported()) {
+			log.info("CDS archives need Java 13 or better: "
+					+ System.getProperty("java.specification.version"));
+			return new ArrayList<>();
+		}
+		if (exists()) {
+			log.info("Using CDS archive: " + this.file);
+			return getUsageOptions();
+		}
+		this.file.getParentFile().mkdirs();
+		this.temp = new File(this.file.getParentFile(),
+				this.file.getName() + "." + System.nanoTime() + ".tmp");
+		log.info("Creating CDS archive: " + this.file);
+		return Arrays.asList("-XX:ArchiveClassesAtExit=" + this.temp.getAbsolutePath());
+	}
+
+	/**
+	 * The JVM options needed to use the archive (assuming it exists).
+	 * @return the JVM options
+	 */
+	public List<String> getUsageOptions() {
+		return Arrays.asList("-XX:SharedArchiveFile=" + this.file.getAbsolutePath(),
+				"-Xshare:auto");
+	}
+
+	/**
+	 * Move a newly created archive into place. Call after the JVM that was creating it
+	 * has exited.
+	 * @return true if there is now an archive
+	 */
+	public boolean complete() {
+		if (this.temp != null && this.temp.exists()) {
+			if (!this.temp.renameTo(this.file)) {
+				// Someone else got there first, which is fine
+				this.temp.delete();
+			}
+			this.temp = null;
+		}
+		return exists();
+	}
+
+	/**
+	 * Flag to say whether the current JVM can create and use dynamic archives (the
+	 * build plugins use this as well).
+	 * @return true if CDS archives are supported
+	 */
+	public static boolean isSupported() {
+		String version = System.getProperty("java.specification.version", "1.7");
+		if (version.startsWith("1.")) {
+			return false;
+		}
+		try {
+			return Integer.parseInt(version.split("\\.")[0]) >= 13;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	static String key(String classpath) {
+		List<File> files = new ArrayList<>();
+		for (String path : StringUtils.delimitedListToStringArray(classpath,
+				File.pathSeparator)) {
+			files.add(new File(path));
+		}
+		return ArchiveUtils.fingerprint(System.getProperty("java.vm.version", ""),
+				files);
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A persistent cache of resolved class paths, stored as plain lists of absolute file
+ * paths in a directory (usually under <code>thin.root</code>). Entries are keyed by a
+ * digest of everything that went into the resolution (the pom files and the merged thin
+ * properties, which include profiles and overrides), so a change to any of those is a
+ * cache miss. Properties that only change how the dependencies are resolved or reported
+ * (e.g. <code>thin.download.threads</code>) are not part of the key. An entry is also
+ * ignored if any of the files it lists has gone missing.
+ *
+ * @author Dave Syer
+ *
+ */
+class ClasspathCache {
+
+	private static final Logger log = LoggerFactory.getLogger(ClasspathCache.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Set<String> IGNORED = new HashSet<>(Arrays.asList(
+			ThinJarLauncher.THIN_CACHE, ThinJarLauncher.THIN_DOWNLOAD_THREADS,
+			ThinJarLauncher.THIN_RESOLUTION_REPORT, ThinJarLauncher.THIN_ROUTING));
+
+	private final File directory;
+
+	public ClasspathCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	public String key(Properties properties, Resource... poms) {
+		try {
+			MessageDigest digest = digest();
+			for (Resource pom : poms) {
+				if (pom == null) {
+					continue;
+				}
+				digest.update(pom.getDescription().getBytes(UTF_8));
+				try (InputStream stream = pom.getInputStream()) {
+					digest.update(StreamUtils.copyToByteArray(stream));
+				}
+			}
+			for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+				if (IGNORED.contains(name)) {
+					continue;
+				}
+				digest.update(name.getBytes(UTF_8));
+				digest.update((byte) '=');
+				digest.update(properties.getProperty(name).getBytes(UTF_8));
+				digest.update((byte) '\n');
+			}
+			return hex(digest.digest());
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot compute class path cache key", e);
+		}
+	}
+
+	/**
+	 * Look up a class path in the cache.
+	 * @param key the cache key
+	 * @return the files in the class path or null if there is no valid entry
+	 */
+	public List<File> get(String key) {
+		File file = file(key);
+		if (!file.exists()) {
+			log.info("Class path cache miss: " + key);
+			return null;
+		}
+		List<File> files = new ArrayList<>();
+		try {
+			String content = new String(FileCopyUtils.copyToByteArray(file), UTF_8);
+			for (String line : content.split("\n")) {
+				if (line.length() == 0) {
+					continue;
+				}
+				File item = new File(line);
+				if (!item.exists()) {
+					log.info("Class path cache entry is stale (missing " + item + "): "
+							+ key);
+					return null;
+				}
+				files.add(item);
+			}
+		}
+		catch (Exception e) {
+			log.info("Cannot read class path cache entry: " + file, e);
+			return null;
+		}
+		log.info("Class path cache hit: " + key);
+		return files;
+	}
+
+	public void put(String key, List<File> files) {
+		StringBuilder builder = new StringBuilder();
+		for (File item : files) {
+			builder.append(item.getAbsolutePath()).append("\n");
+		}
+		File file = file(key);
+		try {
+			file.getParentFile().mkdirs();
+			// Write to a temporary file and rename so that concurrent launches never
+			// see a partial entry
+			File temp = File.createTempFile(key, ".tmp", file.getParentFile());
+			FileCopyUtils.copy(builder.toString().getBytes(UTF_8), temp);
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file)) {
+					temp.delete();
+				}
+			}
+		}
+		catch (Exception e) {
+			// The cache is an optimization, so failing to write it is not fatal
+			log.info("Cannot write class path cache entry: " + file, e);
+		}
+	}
+
+	private File file(String key) {
+		return new File(this.directory, key + ".classpath");
+	}
+
+	/**
+	 * A new SHA-256 digest, for the checksums and cache keys in the launcher (encode the
+	 * result with {@link #hex(byte[])}).
+	 * @return the digest
+	 */
+	static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("No SHA-256 digest available", e);
+		}
+	}
+
+	static String hex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder();
+		for (byte value : bytes) {
+			builder.append(Character.forDigit((value >> 4) & 0xf, 16))
+					.append(Character.forDigit(value & 0xf, 16));
+		}
+		return builder.toString();
+	}
+
+}
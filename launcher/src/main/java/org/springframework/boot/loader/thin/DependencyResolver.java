@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
@@ -36,12 +37,14 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
+import com.google.inject.util.Modules;
 
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
 import org.apache.maven.artifact.repository.MavenArtifactRepository;
 import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.building.ModelBuilder;
 import org.apache.maven.model.building.ModelProcessor;
 import org.apache.maven.model.io.DefaultModelReader;
 import org.apache.maven.model.io.ModelReader;
@@ -79,6 +82,7 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.impl.ArtifactResolver;
 import org.eclipse.aether.impl.MetadataGeneratorFactory;
 import org.eclipse.aether.impl.VersionRangeResolver;
 import org.eclipse.aether.impl.VersionResolver;
@@ -115,15 +119,28 @@ public class DependencyResolver {
 
 	public static final String THIN_ROOT = "thin.root";
 
+	/**
+	 * The name of the property for the local Maven repository, taking precedence over
+	 * the Maven settings (and the system property of the same name).
+	 */
+	public static final String MAVEN_REPO_LOCAL = "maven.repo.local";
+
+	private static final int DEFAULT_DOWNLOAD_THREADS = 5;
+
+	private static final int DEFAULT_ROUTING_DAYS = 7;
+
 	private static final Logger log = LoggerFactory.getLogger(DependencyResolver.class);
 
 	private static DependencyResolver instance = new DependencyResolver();
 
-	private static Properties globals;
-
 	private LocalRepositoryManagerFactory localRepositoryManagerFactory;
 
-	private PlexusContainer container;
+	/**
+	 * Written last in {@link #initialize(Properties)} so that a thread that sees it
+	 * (without the lock) also sees the other components.
+	 */
+	private volatile PlexusContainer container;
+
 	private Object lock = new Object();
 
 	private ProjectBuilder projectBuilder;
@@ -161,6 +178,7 @@ public class DependencyResolver {
 		if (this.container == null) {
 			synchronized (lock) {
 				if (this.container == null) {
+					StartupTimer.Phase phase = StartupTimer.start("container");
 					ClassWorld classWorld = new ClassWorld("plexus.core",
 							Thread.currentThread().getContextClassLoader());
 					ContainerConfiguration config = new DefaultContainerConfiguration()
@@ -170,8 +188,11 @@ public class DependencyResolver {
 							.setAutoWiring(true).setName("maven");
 					PlexusContainer container;
 					try {
-						container = new DefaultPlexusContainer(config, new AetherModule(),
-								new DependencyResolutionModule());
+						// Our bindings replace some of the defaults (e.g. the artifact
+						// resolver)
+						container = new DefaultPlexusContainer(config,
+								Modules.override(new AetherModule())
+										.with(new DependencyResolutionModule()));
 						localRepositoryManagerFactory = container
 								.lookup(LocalRepositoryManagerFactory.class);
 						container.addComponent(
@@ -184,8 +205,12 @@ public class DependencyResolver {
 					catch (Exception e) {
 						throw new IllegalStateException("Cannot create container", e);
 					}
+					finally {
+						phase.stop();
+					}
+					this.settings = new MavenSettingsReader(
+							properties.getProperty(THIN_ROOT)).readSettings();
 					this.container = container;
-					this.settings = new MavenSettingsReader(properties.getProperty(THIN_ROOT)).readSettings();
 				}
 			}
 		}
@@ -199,78 +224,141 @@ public class DependencyResolver {
 			final Properties properties) {
 		if ("true".equals(properties.getProperty("computed", "false"))) {
 			log.info("Dependencies are pre-computed in properties");
-			Model model = new Model();
-			model = ThinPropertiesModelProcessor.process(model, properties);
-			return aetherDependencies(model.getDependencies(), properties);
+			return computedDependencies(properties);
 		}
 		initialize(properties);
+		ResolutionReport report = report(properties);
 		try {
 			log.info("Computing dependencies from pom and properties");
 			ProjectBuildingRequest request = getProjectBuildingRequest(properties);
 			request.setResolveDependencies(true);
-			synchronized (DependencyResolver.class) {
-				ProjectBuildingResult result = projectBuilder
-						.build(new PropertiesModelSource(properties, resource), request);
-				DependencyResolver.globals = null;
-				DependencyResolutionResult dependencies = result
-						.getDependencyResolutionResult();
-				if (!dependencies.getUnresolvedDependencies().isEmpty()) {
-					StringBuilder builder = new StringBuilder();
-					for (Dependency dependency : dependencies
-							.getUnresolvedDependencies()) {
-						List<Exception> errors = dependencies
-								.getResolutionErrors(dependency);
-						for (Exception exception : errors) {
-							if (builder.length() > 0) {
-								builder.append("\n");
-							}
-							builder.append(exception.getMessage());
+			if (report != null) {
+				report.register(
+						(DefaultRepositorySystemSession) request.getRepositorySession());
+			}
+			// Includes transitive resolution, which the project builder does for us
+			StartupTimer.Phase phase = StartupTimer.start("model");
+			ProjectBuildingResult result;
+			try {
+				result = projectBuilder.build(
+						new PropertiesModelSource(properties, resource), request);
+			}
+			finally {
+				phase.stop();
+			}
+			DependencyResolutionResult dependencies = result
+					.getDependencyResolutionResult();
+			if (!dependencies.getUnresolvedDependencies().isEmpty()) {
+				StringBuilder builder = new StringBuilder();
+				for (Dependency dependency : dependencies
+						.getUnresolvedDependencies()) {
+					List<Exception> errors = dependencies
+							.getResolutionErrors(dependency);
+					for (Exception exception : errors) {
+						if (builder.length() > 0) {
+							builder.append("\n");
 						}
+						builder.append(exception.getMessage());
 					}
-					throw new RuntimeException(builder.toString());
 				}
-				List<Dependency> output = runtime(dependencies.getDependencies());
-				if (log.isInfoEnabled()) {
-					for (Dependency dependency : output) {
-						log.info("Resolved: " + coordinates(dependency) + "="
-								+ dependency.getArtifact().getFile());
-					}
+				throw new RuntimeException(builder.toString());
+			}
+			List<Dependency> output = runtime(dependencies.getDependencies());
+			if (log.isInfoEnabled()) {
+				for (Dependency dependency : output) {
+					log.info("Resolved: " + coordinates(dependency) + "="
+							+ dependency.getArtifact().getFile());
 				}
-				return output;
 			}
+			return output;
 		}
 		catch (ProjectBuildingException | NoLocalRepositoryManagerException e) {
 			throw new IllegalStateException("Cannot build model", e);
 		}
+		finally {
+			writeReport(report, properties);
+		}
 	}
 
-	private List<Dependency> aetherDependencies(
-			List<org.apache.maven.model.Dependency> dependencies, Properties properties) {
-		List<Dependency> list = new ArrayList<>();
-		for (org.apache.maven.model.Dependency dependency : dependencies) {
-			Artifact artifact = new DefaultArtifact(coordinates(dependency));
-			Dependency converted = new Dependency(artifact, "runtime");
-			list.add(converted);
+	private ResolutionReport report(Properties properties) {
+		if (!properties.containsKey(ThinJarLauncher.THIN_RESOLUTION_REPORT)) {
+			return null;
 		}
-		initialize(properties);
-		List<ArtifactResult> result = collectNonTransitive(list, properties);
-		list = new ArrayList<>();
-		for (ArtifactResult item : result) {
-			Artifact artifact = item.getArtifact();
-			Dependency converted = new Dependency(artifact, "runtime");
-			list.add(converted);
+		return new ResolutionReport();
+	}
+
+	private void writeReport(ResolutionReport report, Properties properties) {
+		if (report != null) {
+			report.write(
+					properties.getProperty(ThinJarLauncher.THIN_RESOLUTION_REPORT));
+		}
+	}
+
+	private List<Dependency> computedDependencies(Properties properties) {
+		StartupTimer.Phase phase = StartupTimer.start("resolution");
+		ResolutionReport report = report(properties);
+		try {
+			return resolveComputed(properties, report);
+		}
+		finally {
+			phase.stop();
+			writeReport(report, properties);
+		}
+	}
+
+	private List<Dependency> resolveComputed(Properties properties,
+			ResolutionReport report) {
+		List<Artifact> artifacts = LocalArtifactResolver.artifacts(properties);
+		// Only consult the settings if we need them to locate the local repository
+		LocalArtifactResolver local = new LocalArtifactResolver(
+				localRepositoryPath(properties, properties.containsKey(THIN_ROOT) ? null
+						: readSettings(properties), true));
+		Artifact[] resolved = new Artifact[artifacts.size()];
+		List<Dependency> missing = new ArrayList<>();
+		for (int i = 0; i < resolved.length; i++) {
+			if (artifacts.get(i).isSnapshot()) {
+				// Only the repository system knows if a snapshot needs to be updated
+				missing.add(new Dependency(artifacts.get(i), "runtime"));
+				continue;
+			}
+			long start = System.nanoTime();
+			resolved[i] = local.find(artifacts.get(i));
+			if (resolved[i] == null) {
+				missing.add(new Dependency(artifacts.get(i), "runtime"));
+			}
+			else if (report != null) {
+				report.local(resolved[i], System.nanoTime() - start);
+			}
+		}
+		if (!missing.isEmpty()) {
+			log.info("Resolving " + missing.size()
+					+ " snapshot or missing dependencies");
+			initialize(properties);
+			Iterator<ArtifactResult> result = collectNonTransitive(missing, properties,
+					report).iterator();
+			for (int i = 0; i < resolved.length; i++) {
+				if (resolved[i] == null) {
+					resolved[i] = result.next().getArtifact();
+				}
+			}
+		}
+		List<Dependency> list = new ArrayList<>();
+		for (Artifact artifact : resolved) {
+			list.add(new Dependency(artifact, "runtime"));
 		}
 		return list;
 	}
 
-	private String coordinates(org.apache.maven.model.Dependency artifact) {
-		// group:artifact:extension:classifier:version
-		String classifier = artifact.getClassifier();
-		String extension = artifact.getType();
-		return artifact.getGroupId() + ":" + artifact.getArtifactId()
-				+ (extension != null ? ":" + extension : "")
-				+ (classifier != null ? ":" + classifier : "") + ":"
-				+ artifact.getVersion();
+	private MavenSettings readSettings(Properties properties) {
+		if (this.settings == null) {
+			synchronized (lock) {
+				if (this.settings == null) {
+					this.settings = new MavenSettingsReader(
+							properties.getProperty(THIN_ROOT)).readSettings();
+				}
+			}
+		}
+		return this.settings;
 	}
 
 	private String coordinates(Dependency dependency) {
@@ -292,7 +380,7 @@ public class DependencyResolver {
 		Properties properties = new Properties();
 		initialize(properties);
 		// TODO: do we need a version of this with non-empty properties?
-		return collectNonTransitive(Arrays.asList(dependency), properties)
+		return collectNonTransitive(Arrays.asList(dependency), properties, null)
 				.iterator().next().getArtifact().getFile();
 	}
 
@@ -363,7 +451,7 @@ public class DependencyResolver {
 		List<ArtifactRepository> list = new ArrayList<>();
 		if (properties.containsKey(ThinJarLauncher.THIN_ROOT)) {
 			addRepositoryIfMissing(settings, session, list, "local",
-					"file://" + localRepositoryPath(new Properties(), settings, false),
+					"file://" + localRepositoryPath(properties, settings, false),
 					true, true);
 		}
 		addRepositoryIfMissing(settings, session, list, "spring-snapshots",
@@ -528,9 +616,48 @@ public class DependencyResolver {
 				&& !"false".equals(properties.getProperty(THIN_OFFLINE))) {
 			session.setOffline(true);
 		}
+		// Parallel downloads (of jars and checksums) within a single resolution
+		session.setConfigProperty("aether.connector.basic.threads",
+				downloadThreads(properties));
+		if (properties.containsKey(ThinJarLauncher.THIN_ROUTING)
+				&& !"false".equals(properties.getProperty(ThinJarLauncher.THIN_ROUTING))
+				&& !session.isOffline()) {
+			new RepositoryRoutes(
+					PathResolver.thinDirectory(properties.getProperty(THIN_ROOT),
+							"routing"),
+					routingDays(properties)).register(session);
+		}
 		return session;
 	}
 
+	private long routingDays(Properties properties) {
+		String value = properties.getProperty(ThinJarLauncher.THIN_ROUTING);
+		if (!StringUtils.hasText(value) || "true".equals(value)) {
+			return DEFAULT_ROUTING_DAYS;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+					"Cannot parse " + ThinJarLauncher.THIN_ROUTING + "=" + value, e);
+		}
+	}
+
+	private int downloadThreads(Properties properties) {
+		String value = properties.getProperty(ThinJarLauncher.THIN_DOWNLOAD_THREADS);
+		if (!StringUtils.hasText(value)) {
+			return DEFAULT_DOWNLOAD_THREADS;
+		}
+		try {
+			return Math.max(1, Integer.parseInt(value.trim()));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cannot parse "
+					+ ThinJarLauncher.THIN_DOWNLOAD_THREADS + "=" + value, e);
+		}
+	}
+
 	private void applySettings(DefaultRepositorySystemSession session) {
 		MavenSettingsReader.applySettings(settings, session);
 	}
@@ -553,9 +680,27 @@ public class DependencyResolver {
 		}
 	}
 
+	/**
+	 * The local repository that dependencies are resolved into (the
+	 * <code>repository</code> directory under <code>thin.root</code> if there is one),
+	 * computed without starting the container.
+	 * @param properties the thin properties
+	 * @return the local repository directory
+	 */
+	public File getLocalRepository(Properties properties) {
+		MavenSettings settings = this.settings;
+		if (settings == null && !properties.containsKey(THIN_ROOT)) {
+			settings = new MavenSettingsReader().readSettings();
+		}
+		return localRepositoryPath(properties, settings, true);
+	}
+
 	private File localRepositoryPath(Properties properties, MavenSettings settings,
 			boolean preferThinRoot) {
 		if (!properties.containsKey(THIN_ROOT) || !preferThinRoot) {
+			if (StringUtils.hasText(properties.getProperty(MAVEN_REPO_LOCAL))) {
+				return new File(properties.getProperty(MAVEN_REPO_LOCAL));
+			}
 			if (settings != null && StringUtils.hasText(settings.getLocalRepository())) {
 				return new File(settings.getLocalRepository());
 			}
@@ -585,7 +730,7 @@ public class DependencyResolver {
 	}
 
 	private File getM2RepoDirectory() {
-		String mavenRoot = System.getProperty("maven.repo.local");
+		String mavenRoot = System.getProperty(MAVEN_REPO_LOCAL);
 		if (StringUtils.hasLength(mavenRoot)) {
 			return new File(mavenRoot);
 		}
@@ -601,13 +746,17 @@ public class DependencyResolver {
 	}
 
 	private List<ArtifactResult> collectNonTransitive(List<Dependency> dependencies,
-			Properties properties) {
+			Properties properties, ResolutionReport report) {
 		try {
 			DefaultRepositorySystemSession session = createSession(properties);
+			if (report != null) {
+				report.register(session);
+			}
 			List<ArtifactRequest> artifactRequests = getArtifactRequests(dependencies,
 					session);
-			List<ArtifactResult> result = this.repositorySystem.resolveArtifacts(session,
-					artifactRequests);
+			List<ArtifactResult> result = new ParallelArtifactResolver(
+					this.repositorySystem, downloadThreads(properties)).resolve(session,
+							artifactRequests);
 			return result;
 		}
 		catch (Exception ex) {
@@ -628,13 +777,8 @@ public class DependencyResolver {
 		return list;
 	}
 
-	// Package private for model resolution hack in ThinPropertiesModelProcessor
-	static Properties getGlobals() {
-		return globals;
-	}
-
 	@SuppressWarnings("deprecation")
-	private static final class PropertiesModelSource
+	static final class PropertiesModelSource
 			implements org.apache.maven.model.building.ModelSource {
 		private final Properties properties;
 
@@ -645,16 +789,18 @@ public class DependencyResolver {
 			this.resource = resource;
 		}
 
+		/**
+		 * The thin properties for this resolution, applied by the
+		 * {@link ThinPropertiesModelProcessor} when the model is read.
+		 * @return the properties
+		 */
+		public Properties getProperties() {
+			return properties;
+		}
+
 		@Override
 		public InputStream getInputStream() throws IOException {
-			DependencyResolver.globals = properties;
-			return new BufferedInputStream(resource.getInputStream()) {
-				@Override
-				public void close() throws IOException {
-					DependencyResolver.globals = null;
-					super.close();
-				}
-			};
+			return new BufferedInputStream(resource.getInputStream());
 		}
 
 		@Override
@@ -671,6 +817,9 @@ class DependencyResolutionModule extends AbstractModule {
 	protected void configure() {
 		bind(ModelProcessor.class).to(ThinPropertiesModelProcessor.class)
 				.in(Singleton.class);
+		bind(ModelBuilder.class).to(ThinModelBuilder.class).in(Singleton.class);
+		bind(ArtifactResolver.class).to(RoutingArtifactResolver.class)
+				.in(Singleton.class);
 		bind(ModelLocator.class).to(DefaultModelLocator.class).in(Singleton.class);
 		bind(ModelReader.class).to(DefaultModelReader.class).in(Singleton.class);
 		bind(ModelValidator.class).to(DefaultModelValidator.class).in(Singleton.class);
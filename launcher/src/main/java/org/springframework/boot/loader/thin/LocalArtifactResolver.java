@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+
+import org.springframework.util.Assert;
+import org.springframework.util.PropertyPlaceholderHelper;
+import org.springframework.util.StringUtils;
+
+/**
+ * Lightweight resolver for pre-computed dependencies (thin properties with
+ * "computed=true"). Maps coordinates straight to files in a local repository using the
+ * default Maven layout, so that a fully pre-resolved thin jar can be launched without
+ * creating a container, building a model, or even loading the Maven model classes.
+ * Only used for releases: snapshots are left to the repository system, so that their
+ * update policy applies.
+ *
+ * @author Dave Syer
+ *
+ */
+class LocalArtifactResolver {
+
+	/**
+	 * The default extension for the artifact.
+	 */
+	final static String DEFAULT_EXTENSION = "jar";
+
+	/**
+	 * String representing an empty classifier.
+	 */
+	final static String EMPTY_CLASSIFIER = "";
+
+	private static final Pattern COORDINATES = Pattern
+			.compile("([^: ]+):([^: ]+)(:([^: ]*)(:([^: ]+))?)?(:([^: ]+))?");
+
+	private final File repository;
+
+	public LocalArtifactResolver(File repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Locate an artifact in the local repository.
+	 * @param artifact the artifact to find
+	 * @return the artifact with its file set, or null if it is not present locally
+	 */
+	public Artifact find(Artifact artifact) {
+		File file = new File(this.repository, path(artifact));
+		if (file.isFile()) {
+			return artifact.setFile(file);
+		}
+		return null;
+	}
+
+	static String path(Artifact artifact) {
+		StringBuilder path = new StringBuilder(128);
+		path.append(artifact.getGroupId().replace('.', '/')).append('/');
+		path.append(artifact.getArtifactId()).append('/');
+		path.append(artifact.getBaseVersion()).append('/');
+		path.append(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+		if (artifact.getClassifier().length() > 0) {
+			path.append('-').append(artifact.getClassifier());
+		}
+		if (artifact.getExtension().length() > 0) {
+			path.append('.').append(artifact.getExtension());
+		}
+		return path.toString();
+	}
+
+	/**
+	 * Extract the artifacts listed in pre-computed thin properties, applying exclusions
+	 * in the same way as the {@link ThinPropertiesModelProcessor} would.
+	 * @param properties the thin properties
+	 * @return the artifacts
+	 */
+	static List<Artifact> artifacts(Properties properties) {
+		List<Artifact> artifacts = new ArrayList<>();
+		for (String coordinates : dependencies(properties)) {
+			artifacts.add(artifact(coordinates));
+		}
+		return artifacts;
+	}
+
+	/**
+	 * Extract the coordinates of the dependencies listed in pre-computed thin
+	 * properties, after applying exclusions (matched by group, artifact and classifier).
+	 * @param properties the thin properties
+	 * @return the coordinates
+	 */
+	static List<String> dependencies(Properties properties) {
+		Map<String, String> dependencies = new LinkedHashMap<>();
+		List<String> exclusions = new ArrayList<>();
+		for (String name : properties.stringPropertyNames()) {
+			if (name.startsWith("dependencies.")) {
+				String coordinates = replacePlaceholder(properties,
+						properties.getProperty(name));
+				dependencies.put(key(artifact(coordinates)), coordinates);
+			}
+			else if (name.startsWith("exclusions.")) {
+				exclusions.add(
+						replacePlaceholder(properties, properties.getProperty(name)));
+			}
+		}
+		for (String pom : exclusions) {
+			dependencies.remove(key(artifact(pom)));
+		}
+		return new ArrayList<>(dependencies.values());
+	}
+
+	private static String key(Artifact artifact) {
+		return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":"
+				+ artifact.getClassifier();
+	}
+
+	private static String replacePlaceholder(Properties properties, String value) {
+		PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper("${", "}");
+		return helper.replacePlaceholders(value, properties);
+	}
+
+	static DefaultArtifact artifact(String coordinates) {
+		Matcher m = COORDINATES.matcher(coordinates);
+		Assert.isTrue(m.matches(), "Bad artifact coordinates " + coordinates
+				+ ", expected format is <groupId>:<artifactId>[:<extension>[:<classifier>]][:<version>]");
+		String groupId = m.group(1);
+		String artifactId = m.group(2);
+		String version = null;
+		String extension = DEFAULT_EXTENSION;
+		String classifier = EMPTY_CLASSIFIER;
+		if (StringUtils.hasLength(m.group(4))) {
+			extension = m.group(4);
+		}
+		if (StringUtils.hasLength(m.group(8))) {
+			version = m.group(8);
+		}
+		if (StringUtils.hasLength(m.group(6))) {
+			classifier = m.group(6);
+			if (version == null && isVersion(classifier)) {
+				version = classifier;
+				classifier = "";
+			}
+		}
+		else {
+			if (version == null && isVersion(extension)) {
+				version = extension;
+				extension = DEFAULT_EXTENSION;
+			}
+		}
+		return new DefaultArtifact(groupId, artifactId, classifier, extension, version);
+	}
+
+	private static boolean isVersion(String label) {
+		// Not a classifier or an extension (which are usually just simple alphabetic
+		// strings)
+		return label.endsWith("-SNAPSHOT") || !label.matches("[a-zA-Z]+[0-9]*");
+	}
+
+}
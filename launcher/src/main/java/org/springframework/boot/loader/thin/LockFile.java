@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A lock file written by the build plugins next to a computed
+ * <code>thin.properties</code> (e.g. <code>META-INF/thin.lock</code>). It has one line
+ * per artifact in class path order, with the coordinates (the same as in the
+ * <code>dependencies.*</code> entries), the path in a local Maven repository, the size,
+ * the SHA-256 checksum and the id of the repository it came from, separated by spaces.
+ * Lines starting with <code>#</code> are comments. The class path can be computed from
+ * it with a single pass over the local repository and no model building at all.
+ *
+ * @author Dave Syer
+ *
+ */
+class LockFile {
+
+	/**
+	 * The file extension of a lock file (the name is the same as the thin properties).
+	 */
+	public static final String EXTENSION = ".lock";
+
+	private static final Logger log = LoggerFactory.getLogger(LockFile.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final String description;
+
+	private final List<Entry> entries;
+
+	LockFile(String description, List<Entry> entries) {
+		this.description = description;
+		this.entries = entries;
+	}
+
+	/**
+	 * Parse a lock file.
+	 * @param resource the lock file
+	 * @return the parsed lock file
+	 */
+	public static LockFile load(Resource resource) {
+		List<Entry> entries = new ArrayList<>();
+		try (InputStream stream = resource.getInputStream()) {
+			String content = StreamUtils.copyToString(stream, UTF_8);
+			for (String line : content.split("\n")) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split(" +");
+				if (fields.length < 4) {
+					throw new IllegalStateException("Invalid line: " + line);
+				}
+				entries.add(new Entry(fields[0], fields[1], Long.valueOf(fields[2]),
+						fields[3], fields.length > 4 ? fields[4] : null));
+			}
+		}
+		catch (IllegalStateException e) {
+			throw new IllegalStateException("Cannot parse lock file: " + resource, e);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot read lock file: " + resource, e);
+		}
+		return new LockFile(resource.getDescription(), entries);
+	}
+
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(this.entries);
+	}
+
+	/**
+	 * The coordinates of all the artifacts in the lock file.
+	 * @return the coordinates
+	 */
+	public Set<String> getCoordinates() {
+		Set<String> result = new LinkedHashSet<>();
+		for (Entry entry : this.entries) {
+			result.add(entry.getCoordinates());
+		}
+		return result;
+	}
+
+	/**
+	 * Locate the artifacts in a local repository.
+	 * @param repository the local repository
+	 * @param verify if the checksums should be verified (otherwise only the sizes are
+	 * checked)
+	 * @return the files in class path order, or null if any of them is missing or has
+	 * the wrong size
+	 * @throws IllegalStateException if a checksum is verified and does not match
+	 */
+	public List<File> files(File repository, boolean verify) {
+		List<File> files = new ArrayList<>();
+		for (Entry entry : this.entries) {
+			File file = new File(repository, entry.getPath());
+			if (!file.isFile() || file.length() != entry.getSize()) {
+				log.info("Lock file entry not available in " + repository + ": "
+						+ entry.getCoordinates());
+				return null;
+			}
+			if (verify && !entry.getSha256().equalsIgnoreCase(sha256(file))) {
+				throw new IllegalStateException("Checksum of " + file
+						+ " does not match lock file: " + this.description);
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+	static String sha256(File file) {
+		try (InputStream stream = new FileInputStream(file)) {
+			MessageDigest digest = ClasspathCache.digest();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				digest.update(buffer, 0, count);
+			}
+			return ClasspathCache.hex(digest.digest());
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot compute checksum of " + file, e);
+		}
+	}
+
+	/**
+	 * A single artifact in a lock file.
+	 */
+	public static class Entry {
+
+		private final String coordinates;
+
+		private final String path;
+
+		private final long size;
+
+		private final String sha256;
+
+		private final String repository;
+
+		Entry(String coordinates, String path, long size, String sha256,
+				String repository) {
+			this.coordinates = coordinates;
+			this.path = path;
+			this.size = size;
+			this.sha256 = sha256;
+			this.repository = repository;
+		}
+
+		public String getCoordinates() {
+			return this.coordinates;
+		}
+
+		public String getPath() {
+			return this.path;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+
+		public String getSha256() {
+			return this.sha256;
+		}
+
+		/**
+		 * The id of the repository the artifact came from.
+		 * @return the repository id (can be null if it was not known)
+		 */
+		public String getRepository() {
+			return this.repository;
+		}
+
+	}
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * An index from package (strictly, from the directory part of a resource path, e.g.
+ * <code>org/springframework/core/</code> or <code>META-INF/</code>) to the class path
+ * entries that contain it, so that a lookup can go straight to those entries (or give up
+ * straight away if there are none). Jar files and directories are indexed, as well as
+ * directories nested in a jar file (like <code>BOOT-INF/classes/</code>). If any entry
+ * cannot be indexed the index is marked incomplete, and callers should not rely on a
+ * missing package meaning that nobody provides it. Indexes for class paths that only
+ * contain jar files (which do not change) can be stored in a cache directory and
+ * re-used.
+ *
+ * @author Dave Syer
+ *
+ */
+class PackageIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(PackageIndex.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String VERSIONS = "META-INF/versions/";
+
+	private final URL[] urls;
+
+	private final Map<String, BitSet> packages = new HashMap<>();
+
+	private boolean complete = true;
+
+	private boolean cacheable = true;
+
+	private PackageIndex(URL[] urls) {
+		this.urls = urls;
+	}
+
+	/**
+	 * Load the index for these class path entries from the cache directory, or build it
+	 * (and store it in the cache directory if possible).
+	 * @param urls the class path entries
+	 * @param directory the cache directory (can be null)
+	 * @return an index
+	 */
+	public static PackageIndex load(URL[] urls, File directory) {
+		PackageIndex index = new PackageIndex(urls);
+		File file = null;
+		if (directory != null) {
+			file = new File(directory, key(urls) + ".idx");
+			if (index.read(file)) {
+				return index;
+			}
+		}
+		index.build();
+		if (file != null && index.complete && index.cacheable) {
+			index.write(file);
+		}
+		return index;
+	}
+
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * Check if any of the class path entries contains the directory (or package) that a
+	 * resource lives in.
+	 * @param name a resource path (e.g. <code>org/foo/Bar.class</code>)
+	 * @return true if the package is known, or if the index is incomplete
+	 */
+	public boolean mayContain(String name) {
+		if (!this.complete) {
+			return true;
+		}
+		return this.packages.containsKey(directory(name));
+	}
+
+	/**
+	 * The class path entries that contain the directory (or package) that a resource
+	 * lives in. The result belongs to the index and must not be modified.
+	 * @param name a resource path (e.g. <code>org/foo/Bar.class</code>)
+	 * @return the positions of the candidate class path entries, or null if the index is
+	 * incomplete (so any entry might contain the resource)
+	 */
+	public BitSet getCandidates(String name) {
+		if (!this.complete) {
+			return null;
+		}
+		BitSet bits = this.packages.get(directory(name));
+		return bits == null ? new BitSet(0) : bits;
+	}
+
+	/**
+	 * Check if a class path entry is a multi-release jar (strictly, if it has a
+	 * <code>META-INF/versions/</code> directory), in which case the resource with a
+	 * given name depends on the Java version.
+	 * @param position the position of the entry in the class path
+	 * @return true if the entry has versioned resources
+	 */
+	public boolean isVersioned(int position) {
+		BitSet bits = this.packages.get(VERSIONS);
+		return bits != null && bits.get(position);
+	}
+
+	static String directory(String name) {
+		if (name.startsWith("/")) {
+			name = name.substring(1);
+		}
+		int index = name.lastIndexOf('/');
+		return index < 0 ? "" : name.substring(0, index + 1);
+	}
+
+	private void build() {
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < this.urls.length; i++) {
+			try {
+				index(i, this.urls[i]);
+			}
+			catch (Exception e) {
+				log.info("Cannot index " + this.urls[i], e);
+				this.complete = false;
+			}
+		}
+		log.info("Indexed " + this.packages.size() + " packages in " + this.urls.length
+				+ " class path entries in " + (System.currentTimeMillis() - start)
+				+ "ms");
+	}
+
+	private void index(int position, URL url) throws Exception {
+		String path = url.toString();
+		if (path.startsWith("file:")) {
+			File file = new File(url.toURI());
+			if (file.isDirectory()) {
+				this.cacheable = false;
+				add(position, "");
+				indexDirectory(position, file, "");
+			}
+			else if (file.exists()) {
+				indexJar(position, file, null);
+			}
+			return;
+		}
+		if (path.startsWith("jar:file:") && path.contains("!/")) {
+			String jar = path.substring("jar:".length(), path.indexOf("!/"));
+			String prefix = path.substring(path.indexOf("!/") + 2);
+			if (!prefix.contains("!/")) {
+				indexJar(position, new File(new URL(jar).toURI()), prefix);
+				return;
+			}
+		}
+		this.complete = false;
+	}
+
+	private void indexJar(int position, File jar, String prefix) throws Exception {
+		try (JarFile file = new JarFile(jar)) {
+			add(position, "");
+			Enumeration<JarEntry> entries = file.entries();
+			while (entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if (prefix != null) {
+					if (!name.startsWith(prefix)) {
+						continue;
+					}
+					name = name.substring(prefix.length());
+				}
+				add(position, directory(name));
+				if (name.startsWith(VERSIONS)) {
+					// Multi-release jar: the versioned class is also found under the
+					// un-versioned name
+					String versioned = name.substring(VERSIONS.length());
+					if (versioned.contains("/")) {
+						add(position, directory(
+								versioned.substring(versioned.indexOf('/') + 1)));
+					}
+				}
+			}
+		}
+	}
+
+	private void indexDirectory(int position, File directory, String prefix) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				String path = prefix + file.getName() + "/";
+				add(position, path);
+				indexDirectory(position, file, path);
+			}
+		}
+	}
+
+	private void add(int position, String directory) {
+		// Add the directory and all its parents (until we find one we already have)
+		while (true) {
+			BitSet bits = this.packages.get(directory);
+			if (bits == null) {
+				bits = new BitSet(this.urls.length);
+				this.packages.put(directory, bits);
+			}
+			if (bits.get(position)) {
+				return;
+			}
+			bits.set(position);
+			if (directory.length() == 0) {
+				return;
+			}
+			directory = directory(directory.substring(0, directory.length() - 1));
+		}
+	}
+
+	private boolean read(File file) {
+		if (!file.exists()) {
+			return false;
+		}
+		try {
+			String content = new String(FileCopyUtils.copyToByteArray(file), UTF_8);
+			for (String line : content.split("\n")) {
+				int tab = line.indexOf('\t');
+				if (tab < 0) {
+					continue;
+				}
+				BitSet bits = new BitSet(this.urls.length);
+				for (String item : StringUtils
+						.commaDelimitedListToStringArray(line.substring(tab + 1))) {
+					bits.set(Integer.parseInt(item));
+				}
+				this.packages.put(line.substring(0, tab), bits);
+			}
+			log.info("Loaded package index: " + file);
+			return true;
+		}
+		catch (Exception e) {
+			log.info("Cannot read package index: " + file, e);
+			this.packages.clear();
+			return false;
+		}
+	}
+
+	private void write(File file) {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, BitSet> entry : this.packages.entrySet()) {
+			builder.append(entry.getKey()).append('\t');
+			BitSet bits = entry.getValue();
+			for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+				if (i > bits.nextSetBit(0)) {
+					builder.append(',');
+				}
+				builder.append(i);
+			}
+			builder.append('\n');
+		}
+		try {
+			file.getParentFile().mkdirs();
+			File temp = File.createTempFile(file.getName(), ".tmp",
+					file.getParentFile());
+			FileCopyUtils.copy(builder.toString().getBytes(UTF_8), temp);
+			if (!temp.renameTo(file)) {
+				temp.delete();
+			}
+		}
+		catch (Exception e) {
+			log.info("Cannot write package index: " + file, e);
+		}
+	}
+
+	private static String key(URL[] urls) {
+		StringBuilder builder = new StringBuilder();
+		List<File> files = new ArrayList<>();
+		for (URL url : urls) {
+			builder.append(url).append('\n');
+			String path = url.toString();
+			if (path.startsWith("jar:") && path.contains("!/")) {
+				path = path.substring("jar:".length(), path.indexOf("!/"));
+			}
+			if (path.startsWith("file:")) {
+				try {
+					files.add(new File(new URL(path).toURI()));
+				}
+				catch (Exception e) {
+					// Not a file so it won't be cached anyway
+				}
+			}
+		}
+		return ArchiveUtils.fingerprint(builder.toString(), files);
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves (and downloads if necessary) a list of artifacts concurrently using a fixed
+ * pool of worker threads. Requests for the same artifact are only submitted once, and
+ * the number of bytes transferred is logged at the end so that download throughput can
+ * be compared between runs.
+ *
+ * @author Dave Syer
+ *
+ */
+class ParallelArtifactResolver {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(ParallelArtifactResolver.class);
+
+	private final RepositorySystem repositorySystem;
+
+	private final int threads;
+
+	public ParallelArtifactResolver(RepositorySystem repositorySystem, int threads) {
+		this.repositorySystem = repositorySystem;
+		this.threads = threads;
+	}
+
+	public List<ArtifactResult> resolve(DefaultRepositorySystemSession session,
+			List<ArtifactRequest> requests) throws ArtifactResolutionException {
+		TransferCounter counter = new TransferCounter();
+		session.setTransferListener(
+				ChainedTransferListener.newInstance(session.getTransferListener(), counter));
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(this.threads, requests.size())),
+				new DaemonThreadFactory());
+		List<ArtifactResult> results = new ArrayList<>();
+		boolean failed = false;
+		try {
+			Map<String, Future<ArtifactResult>> futures = new LinkedHashMap<>();
+			List<Future<ArtifactResult>> ordered = new ArrayList<>();
+			for (ArtifactRequest request : requests) {
+				String key = request.getArtifact().toString();
+				Future<ArtifactResult> future = futures.get(key);
+				if (future == null) {
+					future = executor.submit(new Resolution(session, request));
+					futures.put(key, future);
+				}
+				ordered.add(future);
+			}
+			for (Future<ArtifactResult> future : ordered) {
+				ArtifactResult result = result(future);
+				if (!result.isResolved()) {
+					failed = true;
+				}
+				results.add(result);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		if (failed) {
+			throw new ArtifactResolutionException(results);
+		}
+		if (counter.count.get() > 0) {
+			long elapsed = Math.max(1, System.currentTimeMillis() - start);
+			long kb = counter.bytes.get() / 1024;
+			log.info("Downloaded " + counter.count.get() + " files (" + kb + "kB) in "
+					+ elapsed + "ms (" + (kb * 1000 / elapsed) + "kB/s) with "
+					+ this.threads + " threads");
+		}
+		return results;
+	}
+
+	private ArtifactResult result(Future<ArtifactResult> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while resolving artifacts", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Cannot resolve artifact", e.getCause());
+		}
+	}
+
+	private class Resolution implements Callable<ArtifactResult> {
+
+		private final DefaultRepositorySystemSession session;
+
+		private final ArtifactRequest request;
+
+		private Resolution(DefaultRepositorySystemSession session,
+				ArtifactRequest request) {
+			this.session = session;
+			this.request = request;
+		}
+
+		@Override
+		public ArtifactResult call() throws Exception {
+			try {
+				return repositorySystem.resolveArtifact(this.session, this.request);
+			}
+			catch (ArtifactResolutionException e) {
+				return e.getResult();
+			}
+		}
+
+	}
+
+	private static class TransferCounter extends AbstractTransferListener {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		@Override
+		public void transferSucceeded(TransferEvent event) {
+			this.count.incrementAndGet();
+			this.bytes.addAndGet(event.getTransferredBytes());
+		}
+
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable,
+					"thin-download-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
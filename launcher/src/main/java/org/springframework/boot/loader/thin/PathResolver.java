@@ -61,6 +61,16 @@ public class PathResolver {
 
 	private boolean force;
 
+	private boolean cache;
+
+	private String downloadThreads;
+
+	private String lock = "false";
+
+	private String report;
+
+	private String routing;
+
 	public PathResolver(DependencyResolver engine) {
 		this.engine = engine;
 	}
@@ -85,6 +95,52 @@ public class PathResolver {
 		this.offline = offline;
 	}
 
+	public void setDownloadThreads(String downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	/**
+	 * Flag to say that resolved class paths should be cached persistently (under the
+	 * root directory) and re-used on subsequent launches with the same inputs.
+	 * @param cache the flag value
+	 */
+	public void setCache(boolean cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Flag to say whether a lock file in the archive should be used to locate the
+	 * dependencies without building a model (if it matches the computed thin properties
+	 * and all the artifacts are in the local repository). Values are "true", "false"
+	 * (the default) or "verify" (to check the SHA-256 checksums as well). A lock file
+	 * with snapshots in it is ignored.
+	 * @param lock the lock file mode
+	 */
+	public void setLock(String lock) {
+		this.lock = lock;
+	}
+
+	/**
+	 * Switch on a report of the poms, jars and metadata files touched while resolving
+	 * dependencies (where they came from, how many repositories were tried, bytes and
+	 * latency), written as JSON. The class path cache is not used when there is a report
+	 * (otherwise it would be empty).
+	 * @param report a file path, or empty (or "true") for standard error
+	 */
+	public void setResolutionReport(String report) {
+		this.report = report;
+	}
+
+	/**
+	 * Switch on a routing table (under the root directory) that remembers which remote
+	 * repository served each group, so it can be asked first next time.
+	 * @param routing the number of days before an entry is revalidated, or empty (or
+	 * "true") for the default
+	 */
+	public void setRouting(String routing) {
+		this.routing = routing;
+	}
+
 	public List<Archive> resolve(Archive archive, String name, String... profiles) {
 		return resolve(null, archive, name, profiles);
 	}
@@ -94,16 +150,118 @@ public class PathResolver {
 		log.info("Extracting dependencies from: {}, with profiles {}", archive,
 				Arrays.asList(profiles));
 		List<Archive> archives = new ArrayList<>();
+		if (parent == null && !"false".equals(this.lock)) {
+			List<File> files = locked(archive, name, profiles);
+			if (files != null) {
+				archives.addAll(archives(files));
+				addRootArchive(archives, archive);
+				return archives;
+			}
+		}
+		ClasspathCache cache = null;
+		String key = null;
+		if (this.cache) {
+			cache = new ClasspathCache(getCacheDirectory());
+			key = cache.key(getProperties(archive, name, profiles),
+					parent == null ? null : getPom(parent), getPom(archive));
+			// A report has to see the resolution, so it always misses the cache
+			List<File> files = this.report == null ? cache.get(key) : null;
+			if (files != null) {
+				archives.addAll(archives(files));
+				addRootArchive(archives, archive);
+				return archives;
+			}
+		}
+		List<File> files;
 		if (parent != null) {
-			archives.addAll(archives(extract(parent, archive, name, profiles)));
+			files = files(extract(parent, archive, name, profiles));
 		}
 		else {
-			archives.addAll(archives(extract(archive, name, profiles)));
+			files = files(extract(archive, name, profiles));
+		}
+		if (cache != null) {
+			cache.put(key, files);
 		}
+		archives.addAll(archives(files));
 		addRootArchive(archives, archive);
 		return archives;
 	}
 
+	private List<File> locked(Archive archive, String name, String[] profiles) {
+		Resource resource = findLock(archive, name, profiles);
+		if (resource == null) {
+			return null;
+		}
+		StartupTimer.Phase phase = StartupTimer.start("lock");
+		try {
+			log.info("Using lock file: " + resource);
+			LockFile lock = LockFile.load(resource);
+			for (String coordinates : lock.getCoordinates()) {
+				if (coordinates.contains("SNAPSHOT")) {
+					// Snapshots can change under the same coordinates
+					log.info("Lock file contains snapshots: " + resource);
+					return null;
+				}
+			}
+			Properties properties = getProperties(archive, name, profiles);
+			if (!"true".equals(properties.getProperty("computed"))
+					|| !lock.getCoordinates().equals(new HashSet<String>(
+							LocalArtifactResolver.dependencies(properties)))) {
+				// Profiles or overrides changed the dependencies
+				log.info("Lock file does not match thin properties: " + resource);
+				return null;
+			}
+			return lock.files(engine.getLocalRepository(properties),
+					"verify".equals(this.lock));
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	private Resource findLock(Archive archive, String name, String[] profiles) {
+		List<String> paths = new ArrayList<>();
+		for (String profile : profiles) {
+			if (StringUtils.hasText(profile)) {
+				// Later profiles have higher priority
+				paths.add(0, name + "-" + profile + LockFile.EXTENSION);
+			}
+		}
+		paths.add(name + LockFile.EXTENSION);
+		try {
+			for (String path : paths) {
+				Resource resource = resources.getResource(archive.getUrl().toString())
+						.createRelative("META-INF/" + path);
+				if (resource.exists()) {
+					return resource;
+				}
+			}
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot locate lock file", e);
+		}
+		return null;
+	}
+
+	private File getCacheDirectory() {
+		return thinDirectory(root, "classpath");
+	}
+
+	/**
+	 * A directory for launcher data (caches and the like) under the root (or
+	 * <code>${user.home}/.m2</code> if there is no root).
+	 * @param root the root directory (might be null)
+	 * @param name the name of the directory
+	 * @return a directory (which may not exist yet)
+	 */
+	static File thinDirectory(String root, String name) {
+		String base = root;
+		if (!StringUtils.hasText(base)) {
+			base = System.getProperty("user.home") + "/.m2";
+		}
+		return new File(StringUtils.cleanPath(base + "/thin/" + name));
+	}
+
 	public Resource getPom(Archive archive) {
 		Resource pom;
 		try {
@@ -214,7 +372,17 @@ public class PathResolver {
 		return engine.dependencies(pom, properties);
 	}
 
-	private Properties getProperties(Archive archive, String name, String[] profiles) {
+	Properties getProperties(Archive archive, String name, String[] profiles) {
+		StartupTimer.Phase phase = StartupTimer.start("properties");
+		try {
+			return mergeProperties(archive, name, profiles);
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	private Properties mergeProperties(Archive archive, String name, String[] profiles) {
 		Properties properties = new Properties();
 		loadThinProperties(properties, archive, name, profiles);
 		loadThinProperties(properties, this.locations, name, profiles);
@@ -230,6 +398,19 @@ public class PathResolver {
 		if (offline) {
 			properties.setProperty("thin.offline", "true");
 		}
+		if (downloadThreads != null) {
+			properties.setProperty(ThinJarLauncher.THIN_DOWNLOAD_THREADS,
+					downloadThreads);
+		}
+		if (cache) {
+			properties.setProperty("thin.cache", "true");
+		}
+		if (report != null) {
+			properties.setProperty(ThinJarLauncher.THIN_RESOLUTION_REPORT, report);
+		}
+		if (routing != null) {
+			properties.setProperty(ThinJarLauncher.THIN_ROUTING, routing);
+		}
 		if (force) {
 			properties.remove("computed");
 		}
@@ -357,13 +538,20 @@ public class PathResolver {
 		props.putAll(added);
 	}
 
-	private List<Archive> archives(List<Dependency> dependencies) {
-		List<Archive> list = new ArrayList<>();
+	private List<File> files(List<Dependency> dependencies) {
+		List<File> list = new ArrayList<>();
 		for (Dependency dependency : dependencies) {
 			File file = dependency.getArtifact().getFile();
-			if (file == null) {
-				continue;
+			if (file != null) {
+				list.add(file);
 			}
+		}
+		return list;
+	}
+
+	private List<Archive> archives(List<File> files) {
+		List<Archive> list = new ArrayList<>();
+		for (File file : files) {
 			try {
 				// Archive is kind of the wrong abstraction here. We only need the URL, so
 				// make that explicit.
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Launches a main class in a fresh JVM with a plain class path (so the application
+ * classes are loaded by the system class loader), inheriting the JVM options and the
+ * standard streams of the current process. The class path and main class can
+ * optionally be written to a Java argument file, so that the same JVM can be started
+ * directly by a script later.
+ *
+ * @author Dave Syer
+ *
+ */
+class ProcessLauncher {
+
+	private static final Logger log = LoggerFactory.getLogger(ProcessLauncher.class);
+
+	private static final String[] EXCLUDED_OPTIONS = { "-XX:ArchiveClassesAtExit",
+			"-XX:SharedArchiveFile", "-XX:DumpLoadedClassList",
+			"-XX:SharedClassListFile", "-Xshare" };
+
+	private final String mainClass;
+
+	private final String classpath;
+
+	private final List<String> options = new ArrayList<>();
+
+	private final List<String> args = new ArrayList<>();
+
+	private File argFile;
+
+	private volatile boolean timedOut;
+
+	public ProcessLauncher(String mainClass, String classpath) {
+		this.mainClass = mainClass;
+		this.classpath = classpath;
+		for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (!isExcluded(option)) {
+				this.options.add(option);
+			}
+		}
+	}
+
+	public void addOptions(List<String> options) {
+		this.options.addAll(options);
+	}
+
+	public void addArgs(String... args) {
+		this.args.addAll(Arrays.asList(args));
+	}
+
+	public List<String> getCommand() {
+		List<String> command = new ArrayList<>();
+		command.add(getJava());
+		command.addAll(this.options);
+		if (this.argFile != null) {
+			command.add("@" + this.argFile.getAbsolutePath());
+		}
+		else {
+			command.add("-cp");
+			command.add(this.classpath);
+			command.add(this.mainClass);
+		}
+		command.addAll(this.args);
+		return command;
+	}
+
+	/**
+	 * Write the class path and main class to a Java argument file (for
+	 * <code>java @file</code>) and use it in the command if the JVM supports it.
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeArgFile(File file) throws IOException {
+		writeArgFile(file, new ArrayList<String>());
+	}
+
+	/**
+	 * Write the class path and main class to a Java argument file (for
+	 * <code>java @file</code>), preceded by some JVM options, and use it in the command
+	 * if the JVM supports it.
+	 * @param file the file to write
+	 * @param options the JVM options to include in the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeArgFile(File file, List<String> options) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (String option : options) {
+			builder.append(quote(option)).append("\n");
+		}
+		builder.append("-cp\n").append(quote(this.classpath)).append("\n");
+		builder.append(this.mainClass).append("\n");
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		FileCopyUtils.copy(builder.toString().getBytes(Charset.forName("UTF-8")), file);
+		if (isArgFileSupported()) {
+			this.argFile = file;
+		}
+	}
+
+	/**
+	 * Run the command and wait for it to finish.
+	 * @return the exit code of the process
+	 * @throws IOException if the process cannot be started
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int run() throws IOException, InterruptedException {
+		return run(0);
+	}
+
+	/**
+	 * Run the command and wait for it to finish, stopping it (gracefully, so that it
+	 * runs its shutdown hooks and the JVM writes anything it does at exit) if it is
+	 * still running after a timeout.
+	 * @param timeout the timeout in seconds (zero or less for no timeout)
+	 * @return the exit code of the process
+	 * @throws IOException if the process cannot be started
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int run(final long timeout) throws IOException, InterruptedException {
+		List<String> command = getCommand();
+		log.info("Launching: " + command);
+		this.timedOut = false;
+		final Process process = new ProcessBuilder(command).inheritIO().start();
+		Thread timer = null;
+		if (timeout > 0) {
+			timer = new Thread("thin-process-timeout") {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(timeout * 1000);
+					}
+					catch (InterruptedException e) {
+						// The process finished first
+						return;
+					}
+					log.info("Stopping process after " + timeout + " seconds");
+					ProcessLauncher.this.timedOut = true;
+					process.destroy();
+				}
+			};
+			timer.setDaemon(true);
+			timer.start();
+		}
+		// If this JVM is stopped (e.g. Ctrl-C or SIGTERM) the app goes with it
+		Thread hook = new Thread("thin-process-shutdown") {
+			@Override
+			public void run() {
+				process.destroy();
+				try {
+					process.waitFor();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(hook);
+		try {
+			return process.waitFor();
+		}
+		finally {
+			if (timer != null) {
+				timer.interrupt();
+			}
+			try {
+				Runtime.getRuntime().removeShutdownHook(hook);
+			}
+			catch (IllegalStateException e) {
+				// Already shutting down, so the hook is running
+			}
+		}
+	}
+
+	/**
+	 * Flag to say that the last process was stopped because it timed out.
+	 * @return true if the last process timed out
+	 */
+	public boolean isTimedOut() {
+		return this.timedOut;
+	}
+
+	static String getJava() {
+		return new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+	}
+
+	static boolean isArgFileSupported() {
+		return !System.getProperty("java.specification.version", "1.7").startsWith("1.");
+	}
+
+	static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static boolean isExcluded(String option) {
+		for (String excluded : EXCLUDED_OPTIONS) {
+			if (option.startsWith(excluded)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
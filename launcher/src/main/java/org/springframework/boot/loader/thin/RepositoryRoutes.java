@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A routing table that remembers which remote repository served artifacts in each
+ * group, so that later resolutions can ask that repository first instead of probing the
+ * others (e.g. <code>spring-snapshots</code> before <code>central</code>) and getting a
+ * 404. A group with no entry of its own uses the entry of its closest parent group
+ * (e.g. <code>org.springframework</code> for <code>org.springframework.retry</code>).
+ * Entries older than the revalidation period are ignored (so the default order is used
+ * and the entry is learned again), and only release artifacts are routed. Local
+ * (<code>file:</code>) repositories always stay in front. Stored in
+ * <code>${thin.root}/thin/routing</code>.
+ *
+ * @author Dave Syer
+ *
+ */
+class RepositoryRoutes {
+
+	private static final Logger log = LoggerFactory.getLogger(RepositoryRoutes.class);
+
+	private static final String FILE = "routes.properties";
+
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	private final File directory;
+
+	private final long period;
+
+	private Map<String, Route> routes;
+
+	private final Map<String, Route> learned = new HashMap<>();
+
+	/**
+	 * @param directory the directory to store the table in
+	 * @param days the number of days after which an entry is revalidated
+	 */
+	public RepositoryRoutes(File directory, long days) {
+		this.directory = directory;
+		this.period = days * DAY;
+	}
+
+	/**
+	 * The routing table for a session, if there is one.
+	 * @param session the repository session
+	 * @return the routing table or null
+	 */
+	public static RepositoryRoutes get(RepositorySystemSession session) {
+		return (RepositoryRoutes) session.getData().get(RepositoryRoutes.class);
+	}
+
+	/**
+	 * Attach this routing table to a session.
+	 * @param session the session
+	 */
+	public void register(RepositorySystemSession session) {
+		session.getData().set(RepositoryRoutes.class, this);
+	}
+
+	/**
+	 * Re-order the repositories for an artifact so that the one that is known to serve
+	 * its group is asked first (after any local repositories).
+	 * @param artifact the artifact to resolve
+	 * @param repositories the remote repositories in the default order
+	 * @return the repositories in the order they should be tried
+	 */
+	public synchronized List<RemoteRepository> route(Artifact artifact,
+			List<RemoteRepository> repositories) {
+		if (artifact.isSnapshot() || repositories.size() < 2) {
+			return repositories;
+		}
+		Route route = find(artifact.getGroupId());
+		if (route == null || route.isExpired(this.period)) {
+			return repositories;
+		}
+		List<RemoteRepository> result = new ArrayList<>();
+		RemoteRepository preferred = null;
+		for (RemoteRepository repository : repositories) {
+			if ("file".equals(repository.getProtocol())) {
+				result.add(repository);
+			}
+			else if (preferred == null && route.repository.equals(repository.getId())) {
+				preferred = repository;
+			}
+		}
+		if (preferred == null) {
+			return repositories;
+		}
+		result.add(preferred);
+		for (RemoteRepository repository : repositories) {
+			if (repository != preferred && !"file".equals(repository.getProtocol())) {
+				result.add(repository);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Learn from the results of a resolution, and store the table if anything changed.
+	 * @param results the results
+	 */
+	public synchronized void learn(List<ArtifactResult> results) {
+		boolean changed = false;
+		for (ArtifactResult result : results) {
+			if (result == null || !result.isResolved()) {
+				continue;
+			}
+			Artifact artifact = result.getArtifact();
+			ArtifactRepository repository = result.getRepository();
+			if (artifact.isSnapshot() || !(repository instanceof RemoteRepository)
+					|| "file".equals(((RemoteRepository) repository).getProtocol())) {
+				continue;
+			}
+			String group = artifact.getGroupId();
+			Route route = routes().get(group);
+			if (route != null && route.repository.equals(repository.getId())
+					&& !route.isExpired(this.period)) {
+				continue;
+			}
+			route = new Route(repository.getId(), System.currentTimeMillis());
+			routes().put(group, route);
+			this.learned.put(group, route);
+			changed = true;
+		}
+		if (changed) {
+			save();
+		}
+	}
+
+	private Route find(String group) {
+		Map<String, Route> routes = routes();
+		while (group.length() > 0) {
+			Route route = routes.get(group);
+			if (route != null) {
+				return route;
+			}
+			int index = group.lastIndexOf(".");
+			group = index < 0 ? "" : group.substring(0, index);
+		}
+		return null;
+	}
+
+	private Map<String, Route> routes() {
+		if (this.routes == null) {
+			this.routes = load();
+		}
+		return this.routes;
+	}
+
+	private Map<String, Route> load() {
+		Map<String, Route> result = new HashMap<>();
+		File file = new File(this.directory, FILE);
+		if (!file.exists()) {
+			return result;
+		}
+		Properties properties = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			properties.load(stream);
+		}
+		catch (Exception e) {
+			log.info("Cannot read repository routes: " + file, e);
+			return result;
+		}
+		for (String group : properties.stringPropertyNames()) {
+			Route route = Route.parse(properties.getProperty(group));
+			if (route != null) {
+				result.put(group, route);
+			}
+		}
+		return result;
+	}
+
+	private void save() {
+		File file = new File(this.directory, FILE);
+		try {
+			// Merge with anything written by other launches in the meantime
+			Map<String, Route> routes = load();
+			routes.putAll(this.learned);
+			Properties properties = new Properties();
+			for (Map.Entry<String, Route> entry : routes.entrySet()) {
+				properties.setProperty(entry.getKey(), entry.getValue().toString());
+			}
+			this.directory.mkdirs();
+			File temp = File.createTempFile("routes", ".tmp", this.directory);
+			try (OutputStream stream = new FileOutputStream(temp)) {
+				properties.store(stream, "Repository routes (groupId=repository,time)");
+			}
+			if (!temp.renameTo(file)) {
+				temp.delete();
+			}
+		}
+		catch (Exception e) {
+			// The table is an optimization, so failing to write it is not fatal
+			log.info("Cannot write repository routes: " + file, e);
+		}
+	}
+
+	private static class Route {
+
+		private final String repository;
+
+		private final long time;
+
+		Route(String repository, long time) {
+			this.repository = repository;
+			this.time = time;
+		}
+
+		static Route parse(String value) {
+			int index = value.lastIndexOf(",");
+			if (index < 0) {
+				return null;
+			}
+			try {
+				return new Route(value.substring(0, index),
+						Long.valueOf(value.substring(index + 1)));
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		boolean isExpired(long period) {
+			return System.currentTimeMillis() - this.time > period;
+		}
+
+		@Override
+		public String toString() {
+			return this.repository + "," + this.time;
+		}
+
+	}
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+import org.eclipse.aether.util.listener.ChainedRepositoryListener;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
+
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Records every pom, jar and metadata file that is touched while resolving dependencies:
+ * where it came from (the id of the remote repository, or "local"), how many remote
+ * repositories were tried, how many bytes were transferred, how long it took and
+ * whether it was a local hit. Switched on by <code>thin.resolution.report</code>, and
+ * written as JSON when the resolution is complete.
+ *
+ * @author Dave Syer
+ *
+ */
+class ResolutionReport {
+
+	private static final String LOCAL = "local";
+
+	private final long start = System.nanoTime();
+
+	private final Map<String, Item> items = new LinkedHashMap<>();
+
+	private final Map<String, Long> bytes = new ConcurrentHashMap<>();
+
+	private final List<String> failures = new ArrayList<>();
+
+	/**
+	 * Add the listeners for this report to a session (in addition to any that are
+	 * already there).
+	 * @param session the session to listen to
+	 */
+	public void register(DefaultRepositorySystemSession session) {
+		session.setRepositoryListener(ChainedRepositoryListener
+				.newInstance(session.getRepositoryListener(), new RepositoryListener()));
+		session.setTransferListener(ChainedTransferListener
+				.newInstance(session.getTransferListener(), new TransferListener()));
+	}
+
+	/**
+	 * Record an artifact that was found in the local repository without asking the
+	 * repository system (e.g. for pre-computed dependencies).
+	 * @param artifact the artifact (with its file)
+	 * @param nanos the time it took to find it
+	 */
+	public void local(Artifact artifact, long nanos) {
+		Item item = item(artifact.getExtension(), coordinates(artifact));
+		synchronized (item) {
+			item.requests++;
+			item.nanos += nanos;
+			item.repository = LOCAL;
+			item.file = artifact.getFile();
+		}
+	}
+
+	/**
+	 * Write the report.
+	 * @param target a file path, or empty (or "true" or "stderr") for standard error
+	 */
+	public void write(String target) {
+		String json = toJson();
+		if (target == null || target.length() == 0 || "true".equals(target)
+				|| "stderr".equals(target)) {
+			System.err.println(json);
+			return;
+		}
+		try {
+			File file = new File(target);
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			FileCopyUtils.copy(json.getBytes(Charset.forName("UTF-8")), file);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot write resolution report: " + target,
+					e);
+		}
+	}
+
+	String toJson() {
+		StringBuilder builder = new StringBuilder("{\"resources\":[");
+		long total = 0;
+		int local = 0;
+		synchronized (this.items) {
+			boolean first = true;
+			for (Map.Entry<String, Item> entry : this.items.entrySet()) {
+				if (!first) {
+					builder.append(",");
+				}
+				first = false;
+				Item item = entry.getValue();
+				synchronized (item) {
+					long count = item.file == null ? 0
+							: value(this.bytes.get(item.file.getAbsolutePath()));
+					total += count;
+					boolean hit = item.attempts == 0 && item.repository != null;
+					if (hit) {
+						local++;
+					}
+					builder.append("{\"type\":\"").append(item.type).append("\"");
+					builder.append(",\"id\":\"").append(escape(item.id)).append("\"");
+					builder.append(",\"repository\":");
+					if (item.repository == null) {
+						builder.append("null");
+					}
+					else {
+						builder.append("\"").append(escape(item.repository)).append("\"");
+					}
+					builder.append(",\"local\":").append(hit);
+					builder.append(",\"requests\":").append(item.requests);
+					builder.append(",\"attempts\":").append(item.attempts);
+					builder.append(",\"failed\":[");
+					for (int i = 0; i < item.failed.size(); i++) {
+						if (i > 0) {
+							builder.append(",");
+						}
+						builder.append("\"").append(escape(item.failed.get(i)))
+								.append("\"");
+					}
+					builder.append("]");
+					builder.append(",\"bytes\":").append(count);
+					builder.append(",\"latency\":").append(millis(item.nanos));
+					builder.append("}");
+				}
+			}
+		}
+		builder.append("],\"failures\":[");
+		synchronized (this.failures) {
+			for (int i = 0; i < this.failures.size(); i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append("\"").append(escape(this.failures.get(i))).append("\"");
+			}
+		}
+		builder.append("],\"local\":").append(local);
+		builder.append(",\"bytes\":").append(total);
+		builder.append(",\"total\":").append(millis(System.nanoTime() - this.start));
+		builder.append("}");
+		return builder.toString();
+	}
+
+	private Item item(String type, String id) {
+		String key = type + ":" + id;
+		synchronized (this.items) {
+			Item item = this.items.get(key);
+			if (item == null) {
+				item = new Item(type, id);
+				this.items.put(key, item);
+			}
+			return item;
+		}
+	}
+
+	private Item item(RepositoryEvent event) {
+		if (event.getArtifact() != null) {
+			Artifact artifact = event.getArtifact();
+			return item(artifact.getExtension(), coordinates(artifact));
+		}
+		Metadata metadata = event.getMetadata();
+		// Each repository has its own metadata
+		String repository = event.getRepository() == null ? LOCAL
+				: repository(event.getRepository());
+		return item("metadata", metadata(metadata) + "@" + repository);
+	}
+
+	private static String coordinates(Artifact artifact) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(artifact.getGroupId()).append(":")
+				.append(artifact.getArtifactId()).append(":")
+				.append(artifact.getExtension());
+		if (artifact.getClassifier().length() > 0) {
+			builder.append(":").append(artifact.getClassifier());
+		}
+		builder.append(":").append(artifact.getVersion());
+		return builder.toString();
+	}
+
+	private static String metadata(Metadata metadata) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(metadata.getGroupId());
+		if (metadata.getArtifactId().length() > 0) {
+			builder.append(":").append(metadata.getArtifactId());
+		}
+		if (metadata.getVersion().length() > 0) {
+			builder.append(":").append(metadata.getVersion());
+		}
+		builder.append(":").append(metadata.getType());
+		return builder.toString();
+	}
+
+	private static String repository(ArtifactRepository repository) {
+		return repository instanceof RemoteRepository ? repository.getId() : LOCAL;
+	}
+
+	private static long value(Long value) {
+		return value == null ? 0 : value;
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private void started(RepositoryEvent event) {
+		Item item = item(event);
+		synchronized (item) {
+			if (item.started == 0) {
+				item.started = System.nanoTime();
+			}
+			item.requests++;
+		}
+	}
+
+	private void downloading(RepositoryEvent event) {
+		Item item = item(event);
+		synchronized (item) {
+			item.attempts++;
+		}
+	}
+
+	private void downloaded(RepositoryEvent event) {
+		if (event.getException() == null || event.getRepository() == null) {
+			return;
+		}
+		Item item = item(event);
+		synchronized (item) {
+			item.failed.add(repository(event.getRepository()));
+		}
+	}
+
+	private void finished(RepositoryEvent event) {
+		Item item = item(event);
+		synchronized (item) {
+			if (item.started > 0) {
+				item.nanos += System.nanoTime() - item.started;
+				item.started = 0;
+			}
+			if (event.getException() == null && event.getRepository() != null) {
+				item.repository = repository(event.getRepository());
+				item.file = event.getFile();
+			}
+		}
+	}
+
+	private class RepositoryListener extends AbstractRepositoryListener {
+
+		@Override
+		public void artifactResolving(RepositoryEvent event) {
+			started(event);
+		}
+
+		@Override
+		public void artifactDownloading(RepositoryEvent event) {
+			downloading(event);
+		}
+
+		@Override
+		public void artifactDownloaded(RepositoryEvent event) {
+			downloaded(event);
+		}
+
+		@Override
+		public void artifactResolved(RepositoryEvent event) {
+			finished(event);
+		}
+
+		@Override
+		public void metadataResolving(RepositoryEvent event) {
+			started(event);
+		}
+
+		@Override
+		public void metadataDownloading(RepositoryEvent event) {
+			downloading(event);
+		}
+
+		@Override
+		public void metadataDownloaded(RepositoryEvent event) {
+			downloaded(event);
+		}
+
+		@Override
+		public void metadataResolved(RepositoryEvent event) {
+			finished(event);
+		}
+
+	}
+
+	private class TransferListener extends AbstractTransferListener {
+
+		@Override
+		public void transferSucceeded(TransferEvent event) {
+			TransferResource resource = event.getResource();
+			if (resource.getFile() == null
+					|| event.getRequestType() != TransferEvent.RequestType.GET) {
+				return;
+			}
+			String path = resource.getFile().getAbsolutePath();
+			synchronized (ResolutionReport.this.bytes) {
+				Long count = ResolutionReport.this.bytes.get(path);
+				ResolutionReport.this.bytes.put(path,
+						value(count) + event.getTransferredBytes());
+			}
+		}
+
+		@Override
+		public void transferFailed(TransferEvent event) {
+			TransferResource resource = event.getResource();
+			synchronized (ResolutionReport.this.failures) {
+				ResolutionReport.this.failures.add(
+						resource.getRepositoryUrl() + resource.getResourceName());
+			}
+		}
+
+	}
+
+	private static class Item {
+
+		private final String type;
+
+		private final String id;
+
+		private final List<String> failed = new ArrayList<>();
+
+		private String repository;
+
+		private File file;
+
+		private int requests;
+
+		private int attempts;
+
+		private long nanos;
+
+		private long started;
+
+		Item(String type, String id) {
+			this.type = type;
+			this.id = id;
+		}
+
+	}
+
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.loader.archive.Archive;
+
+/**
+ * A long-lived process that resolves class paths for thin launchers on the same host,
+ * so that they share a warm container and caches instead of each paying for the
+ * startup of the dependency resolver. It listens on a loopback socket (the port and an
+ * access token are in <code>daemon.properties</code> in its directory, which is only
+ * readable by the owner), and each request is the list of <code>--thin.*</code>
+ * arguments that a {@link ThinJarLauncher} would have used to resolve the class path
+ * itself. There is only one daemon per directory (guarded by a file lock) and it exits
+ * when it has been idle for a while. Launches that set <code>maven.repo.local</code> or
+ * <code>maven.home</code> as system properties use a daemon in a subdirectory keyed on
+ * their values.
+ *
+ * @author Dave Syer
+ *
+ */
+public class ResolverDaemon {
+
+	/**
+	 * The directory for the daemon files (the port and token, a lock file and a log).
+	 */
+	public static final String THIN_DAEMON_DIRECTORY = "thin.daemon.directory";
+
+	/**
+	 * The number of seconds the daemon waits for a request before it exits. Default
+	 * 600.
+	 */
+	public static final String THIN_DAEMON_IDLE = "thin.daemon.idle";
+
+	private static final Logger log = LoggerFactory.getLogger(ResolverDaemon.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String PROPERTIES = "daemon.properties";
+
+	private static final int CONNECT_TIMEOUT = 1000;
+
+	/**
+	 * How long to wait for a client to send its request (milliseconds). A client writes
+	 * the whole request straight after connecting, so this only catches one that has
+	 * gone away, which would otherwise keep the daemon busy (and alive) forever.
+	 */
+	private static final int READ_TIMEOUT = 10000;
+
+	/**
+	 * System properties that the resolver reads directly (instead of from the launcher
+	 * arguments). A daemon is started with the values from the launch that started it,
+	 * and launches with different values use a different daemon.
+	 */
+	private static final String[] SYSTEM_PROPERTIES = { "maven.repo.local",
+			"maven.home" };
+
+	private final File directory;
+
+	private final long idle;
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private volatile long lastRequest = System.currentTimeMillis();
+
+	private String token;
+
+	public ResolverDaemon(File directory, long idle) {
+		this.directory = directory;
+		this.idle = idle;
+	}
+
+	public static void main(String[] args) throws Exception {
+		LogUtils.setLogLevel(Level.OFF);
+		String directory = null;
+		long idle = 600;
+		for (String arg : args) {
+			if (arg.startsWith("--" + THIN_DAEMON_DIRECTORY + "=")) {
+				directory = value(arg);
+			}
+			else if (arg.startsWith("--" + THIN_DAEMON_IDLE + "=")) {
+				idle = Long.valueOf(value(arg));
+			}
+			else if (arg.equals("--thin.debug") || arg.equals("--thin.debug=true")) {
+				LogUtils.setLogLevel(Level.INFO);
+			}
+		}
+		if (directory == null) {
+			throw new IllegalArgumentException(
+					"No directory specified (use --" + THIN_DAEMON_DIRECTORY + ")");
+		}
+		new ResolverDaemon(new File(directory), idle).run();
+		System.exit(0);
+	}
+
+	private static String value(String arg) {
+		return arg.substring(arg.indexOf("=") + 1);
+	}
+
+	/**
+	 * Serve requests until the daemon has been idle for long enough. Returns
+	 * immediately if there is already a daemon using the same directory.
+	 * @throws Exception if the daemon cannot be started
+	 */
+	public void run() throws Exception {
+		this.directory.mkdirs();
+		try (RandomAccessFile file = new RandomAccessFile(
+				new File(this.directory, "daemon.lock"), "rw");
+				FileLock lock = file.getChannel().tryLock()) {
+			if (lock == null) {
+				log.info("Resolver daemon already running in: " + this.directory);
+				return;
+			}
+			serve();
+		}
+	}
+
+	private void serve() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable,
+						"thin-daemon-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		File properties = new File(this.directory, PROPERTIES);
+		try (ServerSocket server = new ServerSocket(0, 50,
+				InetAddress.getLoopbackAddress())) {
+			this.token = token();
+			publish(properties, server.getLocalPort());
+			log.info("Resolver daemon listening on port: " + server.getLocalPort());
+			server.setSoTimeout((int) Math.min(Integer.MAX_VALUE,
+					Math.max(1000, this.idle * 1000)));
+			while (true) {
+				final Socket socket;
+				try {
+					socket = server.accept();
+				}
+				catch (SocketTimeoutException e) {
+					if (this.active.get() == 0 && System.currentTimeMillis()
+							- this.lastRequest >= this.idle * 1000) {
+						log.info("Resolver daemon idle, exiting");
+						break;
+					}
+					continue;
+				}
+				this.active.incrementAndGet();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							handle(socket);
+						}
+						finally {
+							requestCompleted();
+						}
+					}
+				});
+			}
+		}
+		finally {
+			properties.delete();
+			executor.shutdown();
+		}
+	}
+
+	private void requestCompleted() {
+		this.lastRequest = System.currentTimeMillis();
+		this.active.decrementAndGet();
+	}
+
+	private void publish(File file, int port) throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("port", String.valueOf(port));
+		properties.setProperty("token", this.token);
+		File temp = File.createTempFile("daemon", ".tmp", this.directory);
+		// Only the owner can read the token
+		temp.setReadable(false, false);
+		temp.setReadable(true, true);
+		temp.setWritable(false, false);
+		temp.setWritable(true, true);
+		try (OutputStream stream = new FileOutputStream(temp)) {
+			properties.store(stream, "Thin launcher resolver daemon");
+		}
+		file.delete();
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IllegalStateException("Cannot write daemon properties: " + file);
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (Socket client = socket) {
+			client.setSoTimeout(READ_TIMEOUT);
+			Properties request = new Properties();
+			request.load(client.getInputStream());
+			Properties response = new Properties();
+			if (!MessageDigest.isEqual(this.token.getBytes(UTF_8),
+					request.getProperty("token", "").getBytes(UTF_8))) {
+				response.setProperty("error", "Invalid token");
+			}
+			else {
+				try {
+					List<URL> urls = resolve(arguments(request));
+					for (int i = 0; i < urls.size(); i++) {
+						response.setProperty("classpath." + i, urls.get(i).toString());
+					}
+				}
+				catch (Exception e) {
+					log.info("Cannot resolve class path", e);
+					response.setProperty("error", String.valueOf(e));
+				}
+			}
+			response.store(client.getOutputStream(), null);
+		}
+		catch (Exception e) {
+			log.info("Cannot handle request", e);
+		}
+	}
+
+	private List<URL> resolve(String[] args) throws Exception {
+		List<Archive> archives = new ThinJarLauncher(args).resolve(args);
+		List<URL> urls = new ArrayList<>();
+		// The first one is the archive itself, which the client already has
+		for (Archive archive : archives.subList(1, archives.size())) {
+			urls.add(archive.getUrl());
+		}
+		return urls;
+	}
+
+	private String[] arguments(Properties request) {
+		List<String> args = new ArrayList<>();
+		for (int i = 0; request.containsKey("arg." + i); i++) {
+			args.add(request.getProperty("arg." + i));
+		}
+		return args.toArray(new String[0]);
+	}
+
+	private String token() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		return ClasspathCache.hex(bytes);
+	}
+
+	/**
+	 * Ask the daemon in a directory to resolve a class path. If there is no daemon, one
+	 * is started in the background (for the next launch) and this method returns null,
+	 * so the caller can resolve the class path itself.
+	 * @param directory the daemon directory
+	 * @param args the arguments for the launcher (including the archive)
+	 * @param idle the idle timeout for a new daemon in seconds
+	 * @return the resolved class path (not including the archive itself) or null
+	 */
+	public static List<URL> request(File directory, List<String> args, long idle) {
+		directory = directory(directory);
+		Properties daemon = load(new File(directory, PROPERTIES));
+		if (daemon == null) {
+			start(directory, idle);
+			return null;
+		}
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+					Integer.valueOf(daemon.getProperty("port"))), CONNECT_TIMEOUT);
+			Properties request = new Properties();
+			request.setProperty("token", daemon.getProperty("token", ""));
+			for (int i = 0; i < args.size(); i++) {
+				request.setProperty("arg." + i, args.get(i));
+			}
+			request.store(socket.getOutputStream(), null);
+			socket.shutdownOutput();
+			Properties response = new Properties();
+			response.load(socket.getInputStream());
+			if (response.containsKey("error")) {
+				log.info("Resolver daemon failed: " + response.getProperty("error"));
+				return null;
+			}
+			List<URL> urls = new ArrayList<>();
+			for (int i = 0; response.containsKey("classpath." + i); i++) {
+				urls.add(new URL(response.getProperty("classpath." + i)));
+			}
+			log.info("Resolved class path with daemon in: " + directory);
+			return urls;
+		}
+		catch (Exception e) {
+			// Probably a daemon that died without cleaning up
+			log.info("Cannot connect to resolver daemon in: " + directory, e);
+			start(directory, idle);
+			return null;
+		}
+	}
+
+	private static File directory(File directory) {
+		StringBuilder builder = new StringBuilder();
+		for (String name : SYSTEM_PROPERTIES) {
+			String value = System.getProperty(name);
+			if (value != null) {
+				builder.append(name).append("=").append(value).append("\n");
+			}
+		}
+		if (builder.length() == 0) {
+			return directory;
+		}
+		MessageDigest digest = ClasspathCache.digest();
+		return new File(directory,
+				ClasspathCache.hex(digest.digest(builder.toString().getBytes(UTF_8)))
+						.substring(0, 16));
+	}
+
+	private static Properties load(File file) {
+		if (!file.exists()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			properties.load(stream);
+		}
+		catch (Exception e) {
+			return null;
+		}
+		return properties.containsKey("port") ? properties : null;
+	}
+
+	private static void start(File directory, long idle) {
+		try {
+			directory.mkdirs();
+			String classpath = new File(ResolverDaemon.class.getProtectionDomain()
+					.getCodeSource().getLocation().toURI()).getAbsolutePath();
+			List<String> command = new ArrayList<>();
+			command.add(ProcessLauncher.getJava());
+			for (String name : SYSTEM_PROPERTIES) {
+				if (System.getProperty(name) != null) {
+					command.add("-D" + name + "=" + System.getProperty(name));
+				}
+			}
+			command.addAll(Arrays.asList("-cp", classpath, ResolverDaemon.class.getName(),
+					"--" + THIN_DAEMON_DIRECTORY + "=" + directory.getAbsolutePath(),
+					"--" + THIN_DAEMON_IDLE + "=" + idle));
+			ProcessBuilder builder = new ProcessBuilder(command);
+			// Each request carries its own thin properties (including the ones from the
+			// environment), so the daemon must not pick up the ones from this launch
+			for (String name : new ArrayList<>(builder.environment().keySet())) {
+				if (name.startsWith("THIN_")) {
+					builder.environment().remove(name);
+				}
+			}
+			builder.directory(directory);
+			builder.redirectErrorStream(true);
+			builder.redirectOutput(Redirect.appendTo(new File(directory, "daemon.log")));
+			builder.start();
+			log.info("Started resolver daemon in: " + directory);
+		}
+		catch (Exception e) {
+			log.info("Cannot start resolver daemon in: " + directory, e);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.impl.ArtifactResolver;
+import org.eclipse.aether.internal.impl.DefaultArtifactResolver;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+/**
+ * An artifact resolver that re-orders the remote repositories for each request using
+ * the {@link RepositoryRoutes} attached to the session (if there are any), and teaches
+ * them where the artifacts were found. Used for poms (e.g. when building models and
+ * collecting dependencies) as well as jars.
+ *
+ * @author Dave Syer
+ *
+ */
+class RoutingArtifactResolver implements ArtifactResolver {
+
+	private final ArtifactResolver delegate;
+
+	@Inject
+	RoutingArtifactResolver(DefaultArtifactResolver delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ArtifactResult resolveArtifact(RepositorySystemSession session,
+			ArtifactRequest request) throws ArtifactResolutionException {
+		return resolveArtifacts(session, Collections.singleton(request)).get(0);
+	}
+
+	@Override
+	public List<ArtifactResult> resolveArtifacts(RepositorySystemSession session,
+			Collection<? extends ArtifactRequest> requests)
+			throws ArtifactResolutionException {
+		RepositoryRoutes routes = RepositoryRoutes.get(session);
+		if (routes == null) {
+			return this.delegate.resolveArtifacts(session, requests);
+		}
+		for (ArtifactRequest request : requests) {
+			request.setRepositories(
+					routes.route(request.getArtifact(), request.getRepositories()));
+		}
+		try {
+			List<ArtifactResult> results = this.delegate.resolveArtifacts(session,
+					requests);
+			routes.learn(results);
+			return results;
+		}
+		catch (ArtifactResolutionException e) {
+			routes.learn(e.getResults());
+			throw e;
+		}
+	}
+
+}
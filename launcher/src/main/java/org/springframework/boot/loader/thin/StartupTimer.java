@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Records wall-clock and CPU time for the phases of a launch (archive discovery,
+ * properties loading, container initialization, model building, artifact resolution,
+ * class loader creation and the handoff to main). Disabled (and free) unless
+ * {@link #enable()} is called, which the launcher does if <code>thin.timing</code> is
+ * set. Phases can nest (e.g. container initialization while resolving missing
+ * artifacts). CPU time is for the calling thread only, so work done in background
+ * threads (e.g. parallel downloads) only shows up as wall-clock time.
+ *
+ * @author Dave Syer
+ *
+ */
+class StartupTimer {
+
+	private static final Phase NONE = new Phase(null, null);
+
+	private static volatile StartupTimer instance;
+
+	private final long start = System.nanoTime();
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+	public static void enable() {
+		instance = new StartupTimer();
+	}
+
+	public static void disable() {
+		instance = null;
+	}
+
+	public static boolean isEnabled() {
+		return instance != null;
+	}
+
+	/**
+	 * Start timing a phase. Phases with the same name are accumulated.
+	 * @param name the name of the phase
+	 * @return a handle to stop the timer with
+	 */
+	public static Phase start(String name) {
+		StartupTimer timer = instance;
+		if (timer == null) {
+			return NONE;
+		}
+		return new Phase(timer, name);
+	}
+
+	/**
+	 * Write a report of the phases recorded so far, if timing is enabled.
+	 * @param target a file path, or empty (or "true" or "stderr") for standard error
+	 */
+	public static void report(String target) {
+		StartupTimer timer = instance;
+		if (timer == null) {
+			return;
+		}
+		String json = timer.toJson();
+		if (target == null || target.length() == 0 || "true".equals(target)
+				|| "stderr".equals(target)) {
+			System.err.println(json);
+			return;
+		}
+		try {
+			File file = new File(target);
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			FileCopyUtils.copy(json.getBytes(Charset.forName("UTF-8")), file);
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot write timing report: " + target, e);
+		}
+	}
+
+	private long cpu() {
+		if (threads.isCurrentThreadCpuTimeSupported()) {
+			return threads.getCurrentThreadCpuTime();
+		}
+		return 0;
+	}
+
+	private synchronized void record(String name, long wall, long cpu) {
+		long[] values = phases.get(name);
+		if (values == null) {
+			values = new long[3];
+			phases.put(name, values);
+		}
+		values[0] += wall;
+		values[1] += cpu;
+		values[2]++;
+	}
+
+	synchronized String toJson() {
+		StringBuilder builder = new StringBuilder("{\"phases\":[");
+		boolean first = true;
+		for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+			if (!first) {
+				builder.append(",");
+			}
+			first = false;
+			long[] values = phase.getValue();
+			builder.append("{\"name\":\"").append(phase.getKey()).append("\"");
+			builder.append(",\"wall\":").append(millis(values[0]));
+			builder.append(",\"cpu\":").append(millis(values[1]));
+			builder.append(",\"count\":").append(values[2]).append("}");
+		}
+		builder.append("],\"total\":").append(millis(System.nanoTime() - start));
+		builder.append("}");
+		return builder.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+	}
+
+	/**
+	 * A running timer for a single phase.
+	 */
+	static class Phase {
+
+		private final StartupTimer timer;
+
+		private final String name;
+
+		private final long wall;
+
+		private final long cpu;
+
+		private Phase(StartupTimer timer, String name) {
+			this.timer = timer;
+			this.name = name;
+			this.wall = timer == null ? 0 : System.nanoTime();
+			this.cpu = timer == null ? 0 : timer.cpu();
+		}
+
+		public void stop() {
+			if (timer != null) {
+				timer.record(name, System.nanoTime() - wall, timer.cpu() - cpu);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+import org.springframework.boot.loader.LaunchedURLClassLoader;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Class loader for a thin jar application. Can be parent first (the default) or child
+ * first. Uses a {@link PackageIndex} to go straight to the class path entries that
+ * contain the package of a class or resource, in class path order, and to avoid
+ * searching at all for packages that none of its entries contain (e.g. JDK classes, or
+ * probes for optional dependencies that are not present). Lookups fall back to a search
+ * of the whole class path if the index is incomplete, if one of the candidates cannot
+ * be searched on its own (a nested or multi-release jar), or if the name would need
+ * encoding in a URL. Resource lookups through
+ * {@link #getResource(String)} and {@link #getResources(String)} (including the ones that
+ * find nothing) are cached, since the class path never changes once the application is
+ * launched, and the same names (e.g. <code>META-INF/spring.factories</code>) are looked
+ * up many times during startup. Optionally records which entries actually served a class
+ * or resource (see {@link UnusedJarReport}).
+ *
+ * @author Dave Syer
+ *
+ */
+class ThinJarClassLoader extends LaunchedURLClassLoader {
+
+	/**
+	 * The maximum number of resource names (for each of single and multiple lookups) to
+	 * cache the results for.
+	 */
+	static final int CACHE_SIZE = 4096;
+
+	private final File indexDirectory;
+
+	private volatile PackageIndex index;
+
+	private Entry[] entries;
+
+	private boolean parentFirst = false;
+
+	private final ResourceCache<URL> resources = new ResourceCache<>(CACHE_SIZE);
+
+	private final ResourceCache<List<URL>> enumerations = new ResourceCache<>(
+			CACHE_SIZE);
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private volatile UnusedJarReport usage;
+
+	/**
+	 * Create a new class loader.
+	 * @param urls the class path entries
+	 * @param parent the parent class loader
+	 * @param indexDirectory a directory to cache the package index in (can be null)
+	 */
+	public ThinJarClassLoader(URL[] urls, ClassLoader parent, File indexDirectory) {
+		super(urls, parent);
+		this.indexDirectory = indexDirectory;
+	}
+
+	public void setParentFirst(boolean parentFirst) {
+		this.parentFirst = parentFirst;
+	}
+
+	/**
+	 * Record the class path entries that serve classes and resources in this report.
+	 * @param usage the report (can be null to switch off tracking)
+	 */
+	public void setUsage(UnusedJarReport usage) {
+		this.usage = usage;
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve)
+			throws ClassNotFoundException {
+		synchronized (getClassLoadingLock(name)) {
+			// First, check if the class has already been loaded
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				if (getParent() != null
+						&& !mayContain(name.replace('.', '/') + ".class")) {
+					// None of our entries has the package, so only the parent can
+					c = getParent().loadClass(name);
+					if (resolve) {
+						resolveClass(c);
+					}
+					return c;
+				}
+				try {
+					if (!parentFirst) {
+						return findClass(name);
+					}
+				}
+				catch (ClassNotFoundException e) {
+				}
+				return super.loadClass(name, resolve);
+			}
+			return c;
+		}
+	}
+
+	@Override
+	public URL getResource(String name) {
+		synchronized (this.resources) {
+			if (this.resources.containsKey(name)) {
+				this.hits.incrementAndGet();
+				return this.resources.get(name);
+			}
+		}
+		this.misses.incrementAndGet();
+		URL url = lookupResource(name);
+		synchronized (this.resources) {
+			this.resources.put(name, url);
+		}
+		return url;
+	}
+
+	@Override
+	public Enumeration<URL> getResources(String name) throws IOException {
+		List<URL> urls;
+		synchronized (this.enumerations) {
+			urls = this.enumerations.get(name);
+		}
+		if (urls != null) {
+			this.hits.incrementAndGet();
+			return Collections.enumeration(urls);
+		}
+		this.misses.incrementAndGet();
+		urls = Collections.unmodifiableList(Collections.list(super.getResources(name)));
+		synchronized (this.enumerations) {
+			this.enumerations.put(name, urls);
+		}
+		return Collections.enumeration(urls);
+	}
+
+	/**
+	 * The number of resource lookups that were served from the cache.
+	 * @return the number of cache hits
+	 */
+	public long getResourceCacheHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * The number of resource lookups that had to search the class path.
+	 * @return the number of cache misses
+	 */
+	public long getResourceCacheMisses() {
+		return this.misses.get();
+	}
+
+	private URL lookupResource(String name) {
+
+		URL url = null;
+
+		if (parentFirst) {
+			url = getParent().getResource(name);
+			if (url != null) {
+				return (url);
+			}
+		}
+
+		url = findResource(name);
+		if (url != null) {
+			return (url);
+		}
+
+		if (!parentFirst) {
+			url = getParent().getResource(name);
+			if (url != null) {
+				return (url);
+			}
+		}
+
+		return (null);
+
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		Class<?> type = findIndexedClass(name);
+		if (type == null) {
+			type = super.findClass(name);
+		}
+		UnusedJarReport usage = this.usage;
+		if (usage != null) {
+			usage.record(type);
+		}
+		return type;
+	}
+
+	@Override
+	public URL findResource(String name) {
+		if (!mayContain(name)) {
+			return null;
+		}
+		List<Entry> entries = route(name);
+		URL url = entries == null ? super.findResource(name)
+				: findIndexedResource(entries, name);
+		UnusedJarReport usage = this.usage;
+		if (usage != null && url != null) {
+			usage.record(url);
+		}
+		return url;
+	}
+
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		if (!mayContain(name)) {
+			return Collections.emptyEnumeration();
+		}
+		List<Entry> entries = route(name);
+		UnusedJarReport usage = this.usage;
+		if (usage == null && entries == null) {
+			return super.findResources(name);
+		}
+		List<URL> urls = entries == null ? Collections.list(super.findResources(name))
+				: findIndexedResources(entries, name);
+		if (usage == null) {
+			return Collections.enumeration(urls);
+		}
+		for (URL url : urls) {
+			usage.record(url);
+		}
+		return Collections.enumeration(urls);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		}
+		finally {
+			Entry[] entries = this.index == null ? null : this.entries;
+			if (entries != null) {
+				for (Entry entry : entries) {
+					if (entry != null) {
+						entry.close();
+					}
+				}
+			}
+		}
+	}
+
+	private boolean mayContain(String name) {
+		return getIndex().mayContain(name);
+	}
+
+	/**
+	 * The class path entries to search (in order) for a class or resource, or null if
+	 * the whole class path has to be searched.
+	 */
+	private List<Entry> route(String name) {
+		if (!isPlain(name)) {
+			return null;
+		}
+		BitSet candidates = getIndex().getCandidates(name);
+		if (candidates == null) {
+			return null;
+		}
+		List<Entry> result = new ArrayList<>(candidates.cardinality());
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			Entry entry = this.entries[i];
+			if (entry == null) {
+				return null;
+			}
+			result.add(entry);
+		}
+		return result;
+	}
+
+	private Class<?> findIndexedClass(String name) throws ClassNotFoundException {
+		String path = name.replace('.', '/').concat(".class");
+		List<Entry> entries = route(path);
+		if (entries == null) {
+			return null;
+		}
+		for (Entry entry : entries) {
+			Content content;
+			try {
+				content = entry.load(path);
+			}
+			catch (IOException e) {
+				// Same as the normal search: an entry that cannot be read is skipped
+				continue;
+			}
+			if (content != null) {
+				return define(name, entry, content);
+			}
+		}
+		throw new ClassNotFoundException(name);
+	}
+
+	private Class<?> define(String name, Entry entry, Content content) {
+		int dot = name.lastIndexOf('.');
+		if (dot >= 0) {
+			String packageName = name.substring(0, dot);
+			if (getPackage(packageName) == null) {
+				try {
+					if (content.manifest != null) {
+						definePackage(packageName, content.manifest, entry.url);
+					}
+					else {
+						definePackage(packageName, null, null, null, null, null, null,
+								null);
+					}
+				}
+				catch (IllegalArgumentException e) {
+					// Defined concurrently by another thread
+				}
+			}
+		}
+		return defineClass(name, content.bytes, 0, content.bytes.length,
+				new CodeSource(entry.url, content.signers));
+	}
+
+	private URL findIndexedResource(List<Entry> entries, String name) {
+		for (Entry entry : entries) {
+			try {
+				URL url = entry.findResource(name);
+				if (url != null) {
+					return url;
+				}
+			}
+			catch (IOException e) {
+				// Same as the normal search: an entry that cannot be read is skipped
+			}
+		}
+		return null;
+	}
+
+	private List<URL> findIndexedResources(List<Entry> entries, String name) {
+		List<URL> result = new ArrayList<>();
+		for (Entry entry : entries) {
+			try {
+				URL url = entry.findResource(name);
+				if (url != null) {
+					result.add(url);
+				}
+			}
+			catch (IOException e) {
+				// Same as the normal search: an entry that cannot be read is skipped
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Check that a resource name can be used in a URL as it is, so the URLs we create are
+	 * the same as the ones from the normal search.
+	 */
+	private static boolean isPlain(String name) {
+		if (name.length() == 0 || name.startsWith("/") || name.endsWith("/")
+				|| name.contains("..")) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z')
+					&& !(c >= '0' && c <= '9') && "/._-$".indexOf(c) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private PackageIndex getIndex() {
+		PackageIndex index = this.index;
+		if (index == null) {
+			synchronized (this) {
+				index = this.index;
+				if (index == null) {
+					StartupTimer.Phase phase = StartupTimer.start("index");
+					try {
+						URL[] urls = getURLs();
+						index = PackageIndex.load(urls, this.indexDirectory);
+						Entry[] entries = new Entry[urls.length];
+						for (int i = 0; i < urls.length; i++) {
+							if (!index.isVersioned(i)) {
+								entries[i] = Entry.from(urls[i]);
+							}
+						}
+						this.entries = entries;
+					}
+					finally {
+						phase.stop();
+					}
+					this.index = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * A class path entry (a jar file or a directory) that can be searched on its own.
+	 */
+	private static final class Entry {
+
+		private final URL url;
+
+		private final File file;
+
+		private final boolean directory;
+
+		private JarFile jar;
+
+		private boolean closed;
+
+		private Entry(URL url, File file, boolean directory) {
+			this.url = url;
+			this.file = file;
+			this.directory = directory;
+		}
+
+		static Entry from(URL url) {
+			if (!"file".equals(url.getProtocol())) {
+				return null;
+			}
+			try {
+				File file = new File(url.toURI());
+				// Same as URLClassLoader: a trailing slash means a directory
+				if (url.getPath().endsWith("/")) {
+					return file.isDirectory() ? new Entry(url, file, true) : null;
+				}
+				return file.isFile() ? new Entry(url, file, false) : null;
+			}
+			catch (Exception e) {
+				return null;
+			}
+		}
+
+		URL findResource(String name) throws IOException {
+			if (this.directory) {
+				return new File(this.file, name).exists() ? new URL(this.url, name)
+						: null;
+			}
+			return jar().getJarEntry(name) == null ? null
+					: new URL("jar:" + this.url + "!/" + name);
+		}
+
+		Content load(String name) throws IOException {
+			if (this.directory) {
+				File file = new File(this.file, name);
+				return file.isFile()
+						? new Content(FileCopyUtils.copyToByteArray(file), null, null)
+						: null;
+			}
+			JarFile jar = jar();
+			JarEntry entry = jar.getJarEntry(name);
+			if (entry == null) {
+				return null;
+			}
+			byte[] bytes;
+			try (InputStream stream = jar.getInputStream(entry)) {
+				bytes = StreamUtils.copyToByteArray(stream);
+			}
+			// The signers are only known after the entry has been read
+			return new Content(bytes, jar.getManifest(), entry.getCodeSigners());
+		}
+
+		private synchronized JarFile jar() throws IOException {
+			if (this.closed) {
+				throw new IOException("Closed: " + this.file);
+			}
+			if (this.jar == null) {
+				this.jar = new JarFile(this.file);
+			}
+			return this.jar;
+		}
+
+		synchronized void close() {
+			this.closed = true;
+			if (this.jar != null) {
+				try {
+					this.jar.close();
+				}
+				catch (IOException e) {
+					// Ignore
+				}
+				this.jar = null;
+			}
+		}
+
+	}
+
+	/**
+	 * The bytes of a class and the metadata needed to define it.
+	 */
+	private static final class Content {
+
+		private final byte[] bytes;
+
+		private final Manifest manifest;
+
+		private final CodeSigner[] signers;
+
+		Content(byte[] bytes, Manifest manifest, CodeSigner[] signers) {
+			this.bytes = bytes;
+			this.manifest = manifest;
+			this.signers = signers;
+		}
+
+	}
+
+	/**
+	 * A least recently used cache of resource lookups.
+	 */
+	@SuppressWarnings("serial")
+	private static class ResourceCache<T> extends LinkedHashMap<String, T> {
+
+		private final int size;
+
+		ResourceCache(int size) {
+			super(16, 0.75f, true);
+			this.size = size;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+			return size() > this.size;
+		}
+
+	}
+
+}
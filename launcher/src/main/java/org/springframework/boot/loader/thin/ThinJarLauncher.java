@@ -17,11 +17,16 @@
 package org.springframework.boot.loader.thin;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
@@ -31,13 +36,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.boot.loader.ExecutableArchiveLauncher;
-import org.springframework.boot.loader.LaunchedURLClassLoader;
 import org.springframework.boot.loader.archive.Archive;
 import org.springframework.boot.loader.archive.Archive.Entry;
 import org.springframework.boot.loader.archive.ExplodedArchive;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.env.SimpleCommandLinePropertySource;
 import org.springframework.core.env.StandardEnvironment;
+import org.springframework.util.FileCopyUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -132,11 +137,121 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 	 */
 	public static final String THIN_PARENT_BOOT = "thin.parent.boot";
 
+	/**
+	 * Flag to say that the resolved class path should be cached persistently in
+	 * <code>${thin.root}/thin/classpath</code> (keyed by the pom and thin properties)
+	 * and re-used on subsequent launches without resolving dependencies. Default false.
+	 */
+	public static final String THIN_CACHE = "thin.cache";
+
+	/**
+	 * The number of threads used to download artifacts concurrently. Default 5.
+	 */
+	public static final String THIN_DOWNLOAD_THREADS = "thin.download.threads";
+
+	/**
+	 * Flag to switch on a timing report for the phases of the launch (wall-clock and CPU
+	 * time), emitted as JSON just before the main method is called (or at the end of a
+	 * dry run or classpath computation). The value is a file path to write to, or empty
+	 * (or "true") for standard error.
+	 */
+	public static final String THIN_TIMING = "thin.timing";
+
+	/**
+	 * Flag to say that the application should run in a fresh JVM on a plain class path,
+	 * using a dynamic AppCDS archive stored in <code>${thin.root}/thin/cds</code>. The
+	 * archive is keyed on the resolved class path, and created on exit by the first
+	 * launch (or a dry run) with a class path that has not been seen before. Needs Java
+	 * 13 or better.
+	 */
+	public static final String THIN_CDS = "thin.cds";
+
+	/**
+	 * The number of seconds that the application runs for when a CDS archive is
+	 * trained in a dry run (<code>thin.cds</code> with <code>thin.dryrun</code>). After
+	 * that it is stopped gracefully, so that the JVM can write the archive (a web
+	 * application would otherwise never exit). Default 60.
+	 */
+	public static final String THIN_CDS_TRAINING = "thin.cds.training";
+
+	/**
+	 * Flag to say that the application should run in a fresh JVM on a plain class path
+	 * (so none of the resolver classes are loaded alongside it). The class path and main
+	 * class are written to a Java argument file that scripts can use directly on later
+	 * runs (<code>java @file</code>, Java 9 or better). The value is the path of the
+	 * argument file, or empty (or "true") for a file in
+	 * <code>${thin.root}/thin/exec</code> named after a digest of the class path. With
+	 * <code>thin.dryrun</code> only the argument file is written.
+	 */
+	public static final String THIN_EXEC = "thin.exec";
+
+	/**
+	 * Flag to say that the application should run for a warm-up period and then exit,
+	 * writing a report of the jars on the class path that did not serve any classes or
+	 * resources, with suggested exclusions for <code>thin.properties</code>, to
+	 * <code>${thin.root}/thin/unused</code>. The value is the warm-up period in seconds,
+	 * or empty (or "true") for 60 seconds.
+	 */
+	public static final String THIN_UNUSED = "thin.unused";
+
+	/**
+	 * Flag to say whether a lock file (<code>META-INF/thin.lock</code>, generated by the
+	 * build plugins alongside <code>thin.properties</code>) should be used to locate the
+	 * dependencies in the local repository without building a model. It is only used if
+	 * it matches the computed dependencies, and if all the artifacts are available
+	 * (otherwise the dependencies are resolved as normal). Values are "true", "false"
+	 * (the default) or "verify" (to check the SHA-256 checksums as well). A lock file
+	 * with snapshots in it is ignored.
+	 */
+	public static final String THIN_LOCK = "thin.lock";
+
+	/**
+	 * Flag to say that the class path should be resolved by a long-lived
+	 * {@link ResolverDaemon} shared by all the launchers on the host using the same
+	 * root, so that they don't each pay the cost of starting the resolver. The daemon is
+	 * started in the background (in <code>${thin.root}/thin/daemon</code>) by the first
+	 * launch that needs it, which resolves the class path itself, as does any launch
+	 * that cannot reach the daemon. The value is the number of seconds the daemon stays
+	 * alive without requests, or empty (or "true") for 600.
+	 */
+	public static final String THIN_DAEMON = "thin.daemon";
+
+	/**
+	 * Flag to switch on a report of every pom, jar and metadata file touched while
+	 * resolving dependencies, with the repository it came from (or "local"), the number
+	 * of remote repositories tried, the bytes transferred and the latency, emitted as
+	 * JSON when the resolution is complete. The value is a file path to write to, or
+	 * empty (or "true") for standard error.
+	 */
+	public static final String THIN_RESOLUTION_REPORT = "thin.resolution.report";
+
+	/**
+	 * Flag to switch on a routing table in <code>${thin.root}/thin/routing</code> that
+	 * remembers which remote repository served the artifacts in each group, so that
+	 * later resolutions ask that repository first instead of probing the others (e.g.
+	 * <code>spring-snapshots</code> before <code>central</code> for a release). The
+	 * value is the number of days after which an entry is revalidated, or empty (or
+	 * "true") for 7.
+	 */
+	public static final String THIN_ROUTING = "thin.routing";
+
 	private StandardEnvironment environment = new StandardEnvironment();
 	private boolean debug;
 
+	private String timing;
+
+	private UnusedJarReport usage;
+
+	private List<String> daemonArgs;
+
+	private File daemonReport;
+
 	public static void main(String[] args) throws Exception {
 		LogUtils.setLogLevel(Level.OFF);
+		if (isTiming(args)) {
+			// Enable early so that the archive discovery is timed as well
+			StartupTimer.enable();
+		}
 		new ThinJarLauncher(args).launch(args);
 	}
 
@@ -147,7 +262,18 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 	@Override
 	protected void launch(String[] args) throws Exception {
 		addCommandLineProperties(args);
+		if (!"false".equals(
+				environment.resolvePlaceholders("${" + THIN_DAEMON + ":false}"))) {
+			this.daemonArgs = daemonArgs(args);
+		}
 		args = removeThinArgs(args);
+		String timing = environment.resolvePlaceholders("${" + THIN_TIMING + ":false}");
+		if (!"false".equals(timing)) {
+			this.timing = timing;
+			if (!StartupTimer.isEnabled()) {
+				StartupTimer.enable();
+			}
+		}
 		String root = environment.resolvePlaceholders("${" + THIN_ROOT + ":}");
 		String classpathValue = environment
 				.resolvePlaceholders("${" + THIN_CLASSPATH + ":false}");
@@ -175,24 +301,194 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		if (classpath) {
 			List<Archive> archives = getClassPathArchives();
 			System.out.println(classpath(archives));
+			report();
 			return;
 		}
 		if (compute) {
 			List<Dependency> dependencies = getDependencies();
 			System.out.println(properties(dependencies));
+			report();
 			return;
 		}
 		log.info("Version: " + getVersion());
-		if (!"false".equals(
-				environment.resolvePlaceholders("${" + THIN_DRYRUN + ":false}"))) {
+		boolean dryrun = !"false"
+				.equals(environment.resolvePlaceholders("${" + THIN_DRYRUN + ":false}"));
+		boolean cds = !"false"
+				.equals(environment.resolvePlaceholders("${" + THIN_CDS + ":false}"));
+		String exec = environment.resolvePlaceholders("${" + THIN_EXEC + ":false}");
+		if (cds || !"false".equals(exec)) {
+			int status = fork(args, root, dryrun, cds,
+					"false".equals(exec) ? null : exec);
+			if (status != 0) {
+				System.exit(status);
+			}
+			return;
+		}
+		if (dryrun) {
 			getClassPathArchives();
 			log.info("Downloaded dependencies"
 					+ (!StringUtils.hasText(root) ? "" : " to " + root));
+			report();
 			return;
 		}
 		super.launch(args);
 	}
 
+	private int fork(String[] args, String root, boolean dryrun, boolean cds,
+			String exec) throws Exception {
+		Archive local = getArchive();
+		checkForkable(!(local instanceof ExplodedArchive) && !ArchiveUtils
+				.nestedClasses(local, "BOOT-INF/classes/").isEmpty());
+		List<Archive> archives = getClassPathArchives();
+		for (Archive entry : archives) {
+			String url = entry.getUrl().toString();
+			int index = url.indexOf("!/");
+			checkForkable(index >= 0 && index < url.length() - "!/".length());
+		}
+		String classpath = classpath(archives);
+		ProcessLauncher launcher = new ProcessLauncher(getMainClass(), classpath);
+		CdsArchive archive = null;
+		boolean training = false;
+		if (cds) {
+			archive = new CdsArchive(PathResolver.thinDirectory(root, "cds"), classpath);
+			if (dryrun && archive.exists()) {
+				log.info("CDS archive already exists: " + archive.getFile());
+			}
+			else {
+				training = !archive.exists();
+				launcher.addOptions(archive.getJvmOptions());
+				if (dryrun) {
+					// Spring Boot (3.2 and above) stops after the context is refreshed,
+					// older versions are stopped when the training period is over
+					launcher.addOptions(
+							Arrays.asList("-Dspring.context.exit=onRefresh"));
+				}
+			}
+		}
+		File file = null;
+		if (exec != null) {
+			file = StringUtils.hasText(exec) && !"true".equals(exec) ? new File(exec)
+					: new File(PathResolver.thinDirectory(root, "exec"),
+							CdsArchive.key(classpath) + ".args");
+			launcher.writeArgFile(file);
+			log.info("Wrote argument file: " + file);
+		}
+		launcher.addArgs(args);
+		report();
+		int status = 0;
+		if (!dryrun) {
+			status = launcher.run();
+		}
+		else if (training) {
+			// In a dry run there is nothing to do unless there is an archive to train
+			status = launcher.run(getTrainingPeriod());
+			if (launcher.isTimedOut()) {
+				status = 0;
+			}
+		}
+		if (training && archive.complete()) {
+			log.info("CDS archive: " + archive.getFile());
+		}
+		if (file != null && archive != null && archive.exists()) {
+			// Scripts using the argument file get the archive as well
+			launcher.writeArgFile(file, archive.getUsageOptions());
+			log.info("Added CDS archive to argument file: " + file);
+		}
+		return status;
+	}
+
+	private long getTrainingPeriod() {
+		String value = environment
+				.resolvePlaceholders("${" + THIN_CDS_TRAINING + ":60}");
+		try {
+			return Long.valueOf(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+					"Cannot parse " + THIN_CDS_TRAINING + "=" + value, e);
+		}
+	}
+
+	@Override
+	protected void launch(String[] args, String mainClass, ClassLoader classLoader)
+			throws Exception {
+		StartupTimer.Phase phase = StartupTimer.start("main");
+		try {
+			// Load (but do not initialize) the main class so its cost is measured
+			Class.forName(mainClass, false, classLoader);
+		}
+		finally {
+			phase.stop();
+		}
+		report();
+		if (this.usage != null) {
+			trackUsage();
+		}
+		super.launch(args, mainClass, classLoader);
+	}
+
+	private void trackUsage() {
+		final UnusedJarReport usage = this.usage;
+		final long warmup = getSeconds(THIN_UNUSED, 60);
+		String root = environment.resolvePlaceholders("${" + THIN_ROOT + ":}");
+		final File file = new File(PathResolver.thinDirectory(root, "unused"),
+				getArchiveName() + ".properties");
+		Runtime.getRuntime().addShutdownHook(new Thread("thin-unused-report") {
+			@Override
+			public void run() {
+				try {
+					usage.write(file, warmup + " seconds");
+					log.info("Unused jar report: " + file);
+				}
+				catch (IOException e) {
+					log.error("Cannot write unused jar report: " + file, e);
+				}
+			}
+		});
+		Thread timer = new Thread("thin-unused-warmup") {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(warmup * 1000);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				System.exit(0);
+			}
+		};
+		timer.setDaemon(true);
+		timer.start();
+		log.info("Tracking class path usage for " + warmup + " seconds");
+	}
+
+	private String getArchiveName() throws Exception {
+		String path = getArchive().getUrl().toString();
+		if (path.endsWith("!/")) {
+			path = path.substring(0, path.length() - 2);
+		}
+		path = StringUtils.trimTrailingCharacter(path, '/');
+		return StringUtils.stripFilenameExtension(StringUtils.getFilename(path));
+	}
+
+	private void report() {
+		if (this.timing != null) {
+			StartupTimer.report(this.timing);
+		}
+	}
+
+	private static boolean isTiming(String[] args) {
+		String value = getProperty(THIN_TIMING);
+		String prefix = "--" + THIN_TIMING;
+		for (String arg : args) {
+			if (arg.equals(prefix) || arg.startsWith(prefix + "=")) {
+				value = arg.length() > prefix.length()
+						? arg.substring(prefix.length() + 1) : "";
+			}
+		}
+		return value != null && !"false".equals(value);
+	}
+
 	private static String getVersion() {
 		Package pkg = ThinJarLauncher.class.getPackage();
 		return (pkg != null ? pkg.getImplementationVersion() : null);
@@ -255,6 +551,18 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 				+ artifact.getVersion();
 	}
 
+	/**
+	 * A forked JVM only understands plain jars and directories, so a packed fat jar (with
+	 * nested jars, or classes in <code>BOOT-INF/classes</code>) has to be unpacked first.
+	 */
+	private void checkForkable(boolean packed) throws Exception {
+		if (packed) {
+			throw new IllegalStateException("Cannot run " + getArchive() + " with "
+					+ THIN_CDS + " or " + THIN_EXEC + " because it is a packed fat jar."
+					+ " Unpack it (e.g. with jar -xf) and launch the directory instead.");
+		}
+	}
+
 	private String classpath(List<Archive> archives) throws Exception {
 		StringBuilder builder = new StringBuilder();
 		String separator = System.getProperty("path.separator");
@@ -308,6 +616,16 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 
 	@Override
 	protected ClassLoader createClassLoader(URL[] urls) throws Exception {
+		StartupTimer.Phase phase = StartupTimer.start("classloader");
+		try {
+			return createThinClassLoader(urls);
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	private ClassLoader createThinClassLoader(URL[] urls) throws Exception {
 		// Use the system classloader (the one that the JVM started with), not the one
 		// from this class:
 		ClassLoader parent = ClassLoader.getSystemClassLoader();
@@ -315,9 +633,12 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 				environment.resolvePlaceholders("${" + THIN_PARENT_BOOT + ":true}"))) {
 			parent = parent.getParent();
 		}
+		String root = environment.resolvePlaceholders("${" + THIN_ROOT + ":}");
+		String cache = environment.resolvePlaceholders("${" + THIN_CACHE + ":false}");
 		ThinJarClassLoader loader = new ThinJarClassLoader(
 				ArchiveUtils.addNestedClasses(getArchive(), urls, "BOOT-INF/classes/"),
-				parent);
+				parent, "false".equals(cache) ? null
+						: PathResolver.thinDirectory(root, "index"));
 		if ("true".equals(
 				environment.resolvePlaceholders("${" + THIN_PARENT_FIRST + ":true}"))) {
 			// Use a (traditional) parent first class loader
@@ -326,6 +647,11 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		else {
 			loader.setParentFirst(false);
 		}
+		if (!"false".equals(
+				environment.resolvePlaceholders("${" + THIN_UNUSED + ":false}"))) {
+			this.usage = new UnusedJarReport(loader.getURLs());
+			loader.setUsage(this.usage);
+		}
 		return loader;
 	}
 
@@ -340,6 +666,155 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 
 	@Override
 	protected List<Archive> getClassPathArchives() throws Exception {
+		if (this.daemonArgs != null) {
+			List<Archive> archives = resolveWithDaemon();
+			if (archives != null) {
+				return archives;
+			}
+		}
+		return resolveClassPath();
+	}
+
+	/**
+	 * Resolve the class path in this process (called by the {@link ResolverDaemon}).
+	 * @param args the launcher arguments
+	 * @return the class path archives
+	 * @throws Exception if the class path cannot be resolved
+	 */
+	List<Archive> resolve(String[] args) throws Exception {
+		addCommandLineProperties(args);
+		return resolveClassPath();
+	}
+
+	private long getSeconds(String name, long defaultValue) {
+		String value = environment.resolvePlaceholders("${" + name + ":}").trim();
+		if (!StringUtils.hasText(value) || "true".equals(value)) {
+			return defaultValue;
+		}
+		try {
+			return Long.valueOf(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cannot parse " + name + "=" + value
+					+ " (expected true or a number of seconds)", e);
+		}
+	}
+
+	private List<Archive> resolveWithDaemon() throws Exception {
+		String root = environment.resolvePlaceholders("${" + THIN_ROOT + ":}");
+		long idle = getSeconds(THIN_DAEMON, 600);
+		StartupTimer.Phase phase = StartupTimer.start("daemon");
+		try {
+			List<URL> urls = ResolverDaemon.request(PathResolver.thinDirectory(
+					StringUtils.hasText(root) ? new File(root).getAbsolutePath() : null,
+					"daemon"), this.daemonArgs, idle);
+			if (this.daemonReport != null) {
+				if (urls != null && this.daemonReport.length() > 0) {
+					System.err.println(new String(
+							FileCopyUtils.copyToByteArray(this.daemonReport),
+							Charset.forName("UTF-8")));
+				}
+				this.daemonReport.delete();
+			}
+			if (urls == null) {
+				return null;
+			}
+			List<Archive> archives = new ArrayList<>();
+			archives.add(getArchive());
+			for (URL url : urls) {
+				archives.add(new UrlArchive(url));
+			}
+			return archives;
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	private List<String> daemonArgs(String[] args) throws Exception {
+		// The daemon has none of the environment or system properties of this launch,
+		// so they are all sent with the request (later ones win, as in the environment)
+		Map<String, String> options = new LinkedHashMap<>();
+		try {
+			Map<String, String> env = System.getenv();
+			for (String name : env.keySet()) {
+				if (name.startsWith("THIN_") && !name.startsWith("THIN_DAEMON")
+						&& !name.startsWith("THIN_PROPERTIES_")) {
+					options.put(name.toLowerCase(Locale.ENGLISH).replace("_", "."),
+							env.get(name));
+				}
+			}
+			Properties system = System.getProperties();
+			for (String name : system.stringPropertyNames()) {
+				if (name.startsWith("thin.") && !name.startsWith(THIN_DAEMON)) {
+					options.put(name, system.getProperty(name));
+				}
+			}
+		}
+		catch (AccessControlException e) {
+			// ignore
+		}
+		for (String arg : args) {
+			if ("--".equals(arg)) {
+				break;
+			}
+			if (arg.startsWith("--thin.") && !arg.startsWith("--" + THIN_DAEMON)) {
+				int index = arg.indexOf("=");
+				if (index < 0) {
+					options.put(arg.substring(2), null);
+				}
+				else {
+					options.put(arg.substring(2, index), arg.substring(index + 1));
+				}
+			}
+		}
+		// The daemon has a different working directory, so paths have to be absolute
+		String root = environment.resolvePlaceholders("${" + THIN_ROOT + ":}");
+		if (StringUtils.hasText(root)) {
+			options.put(THIN_ROOT, new File(root).getAbsolutePath());
+		}
+		String locations = environment.resolvePlaceholders(
+				"${" + THIN_LOCATION + ":classpath:/,file:.}");
+		StringBuilder builder = new StringBuilder();
+		for (String location : StringUtils.commaDelimitedListToStringArray(locations)) {
+			if (builder.length() > 0) {
+				builder.append(",");
+			}
+			if (location.startsWith("file:")) {
+				File file = new File(location.substring("file:".length()));
+				location = "file:" + file.getAbsolutePath();
+			}
+			builder.append(location);
+		}
+		options.put(THIN_LOCATION, builder.toString());
+		String report = environment
+				.resolvePlaceholders("${" + THIN_RESOLUTION_REPORT + ":false}");
+		if (!"false".equals(report)) {
+			if (report.length() == 0 || "true".equals(report)
+					|| "stderr".equals(report)) {
+				// The daemon's standard error is its log, so it writes to a file that
+				// is copied to standard error here
+				this.daemonReport = File.createTempFile("thin-report", ".json");
+				report = this.daemonReport.getAbsolutePath();
+			}
+			options.put(THIN_RESOLUTION_REPORT, new File(report).getAbsolutePath());
+		}
+		String parent = environment.resolvePlaceholders("${" + THIN_PARENT + ":}");
+		if (StringUtils.hasText(parent)) {
+			options.put(THIN_PARENT, ArchiveUtils
+					.getArchiveRoot(ArchiveUtils.getArchive(parent)).getAbsolutePath());
+		}
+		options.put(THIN_ARCHIVE,
+				ArchiveUtils.getArchiveRoot(getArchive()).getAbsolutePath());
+		List<String> result = new ArrayList<>();
+		for (Map.Entry<String, String> option : options.entrySet()) {
+			result.add("--" + option.getKey()
+					+ (option.getValue() == null ? "" : "=" + option.getValue()));
+		}
+		return result;
+	}
+
+	private List<Archive> resolveClassPath() throws Exception {
 		String parent = environment
 				.resolvePlaceholders("${" + ThinJarLauncher.THIN_PARENT + ":}");
 		String name = environment
@@ -387,6 +862,25 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		if (!"false".equals(force)) {
 			resolver.setForce(true);
 		}
+		String threads = environment
+				.resolvePlaceholders("${" + THIN_DOWNLOAD_THREADS + ":}");
+		if (StringUtils.hasText(threads)) {
+			resolver.setDownloadThreads(threads);
+		}
+		String cache = environment.resolvePlaceholders("${" + THIN_CACHE + ":false}");
+		if (!"false".equals(cache)) {
+			resolver.setCache(true);
+		}
+		resolver.setLock(environment.resolvePlaceholders("${" + THIN_LOCK + ":false}"));
+		String report = environment
+				.resolvePlaceholders("${" + THIN_RESOLUTION_REPORT + ":false}");
+		if (!"false".equals(report)) {
+			resolver.setResolutionReport(report);
+		}
+		String routing = environment.resolvePlaceholders("${" + THIN_ROUTING + ":false}");
+		if (!"false".equals(routing)) {
+			resolver.setRouting(routing);
+		}
 		resolver.setOverrides(getSystemProperties());
 		return resolver;
 	}
@@ -426,6 +920,16 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 	}
 
 	private static Archive computeArchive(String[] args) throws Exception {
+		StartupTimer.Phase phase = StartupTimer.start("archive");
+		try {
+			return findArchive(args);
+		}
+		finally {
+			phase.stop();
+		}
+	}
+
+	private static Archive findArchive(String[] args) throws Exception {
 		String path = getProperty(THIN_ARCHIVE);
 		String prefix = "--" + THIN_ARCHIVE;
 		for (String arg : args) {
@@ -450,66 +954,4 @@ public class ThinJarLauncher extends ExecutableArchiveLauncher {
 		return System.getenv(key.replace(".", "_").toUpperCase());
 	}
 
-	private static class ThinJarClassLoader extends LaunchedURLClassLoader {
-
-		private boolean parentFirst = false;
-
-		public ThinJarClassLoader(URL[] urls, ClassLoader parent) {
-			super(urls, parent);
-		}
-
-		public void setParentFirst(boolean parentFirst) {
-			this.parentFirst = parentFirst;
-		}
-
-		@Override
-		protected Class<?> loadClass(String name, boolean resolve)
-				throws ClassNotFoundException {
-			synchronized (getClassLoadingLock(name)) {
-				// First, check if the class has already been loaded
-				Class<?> c = findLoadedClass(name);
-				if (c == null) {
-					try {
-						if (!parentFirst) {
-							return findClass(name);
-						}
-					}
-					catch (ClassNotFoundException e) {
-					}
-					return super.loadClass(name, resolve);
-				}
-				return c;
-			}
-		}
-
-		@Override
-		public URL getResource(String name) {
-
-			URL url = null;
-
-			if (parentFirst) {
-				url = getParent().getResource(name);
-				if (url != null) {
-					return (url);
-				}
-			}
-
-			url = findResource(name);
-			if (url != null) {
-				return (url);
-			}
-
-			if (!parentFirst) {
-				url = getParent().getResource(name);
-				if (url != null) {
-					return (url);
-				}
-			}
-
-			return (null);
-
-		}
-
-	}
-
 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuildingResult;
+import org.apache.maven.model.building.ModelSource;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * A model builder that keeps the (flattened) dependency management of imported BOMs in
+ * a persistent cache, so that a launch doesn't have to read, inherit and interpolate
+ * the BOM and its parents (e.g. <code>spring-cloud-dependencies</code>) every time. Only
+ * active if <code>thin.cache</code> is set. Entries are stored in
+ * <code>${thin.root}/thin/models</code>, keyed by the coordinates, a checksum of the BOM
+ * pom file and the user and system properties that might be used to interpolate it,
+ * and stored as pom XML (so reading them back never instantiates arbitrary classes).
+ * Snapshots are never cached. Parent poms are not cached, since they are interpolated in
+ * the context of the child.
+ *
+ * @author Dave Syer
+ *
+ */
+class ThinModelBuilder extends DefaultModelBuilder {
+
+	private static final Logger log = LoggerFactory.getLogger(ThinModelBuilder.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String IMPORT = "import";
+
+	private static final String[] SKIPPED_PREFIXES = { "dependencies.", "exclusions.",
+			"boms.", "thin.", "java.", "sun.", "os.", "user.", "file.", "line.",
+			"path.", "jdk.", "awt." };
+
+	private final Map<String, DependencyManagement> imports = new ConcurrentHashMap<>();
+
+	@Override
+	public ModelBuildingResult build(ModelBuildingRequest request)
+			throws ModelBuildingException {
+		wrapCache(request);
+		return super.build(request);
+	}
+
+	@Override
+	public ModelBuildingResult build(ModelBuildingRequest request,
+			ModelBuildingResult result) throws ModelBuildingException {
+		wrapCache(request);
+		return super.build(request, result);
+	}
+
+	private void wrapCache(ModelBuildingRequest request) {
+		if (request.getModelCache() == null
+				|| request.getModelCache() instanceof PersistentModelCache) {
+			return;
+		}
+		Properties user = request.getUserProperties();
+		if (user == null || "false".equals(user.getProperty("thin.cache", "false"))) {
+			return;
+		}
+		File directory = PathResolver.thinDirectory(
+				user.getProperty(DependencyResolver.THIN_ROOT), "models");
+		request.setModelCache(new PersistentModelCache(request.getModelCache(),
+				request.getModelResolver(), directory,
+				digest(user, request.getSystemProperties())));
+	}
+
+	private String digest(Properties... properties) {
+		try {
+			MessageDigest digest = ClasspathCache.digest();
+			for (Properties values : properties) {
+				if (values == null) {
+					continue;
+				}
+				for (String name : new TreeSet<>(values.stringPropertyNames())) {
+					if (isSkipped(name)) {
+						continue;
+					}
+					digest.update((name + "=" + values.getProperty(name) + "\n")
+							.getBytes(UTF_8));
+				}
+				digest.update((byte) 0);
+			}
+			return ClasspathCache.hex(digest.digest());
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Cannot compute model cache key", e);
+		}
+	}
+
+	private boolean isSkipped(String name) {
+		// Properties that cannot change a BOM (or are different for every JVM)
+		for (String prefix : SKIPPED_PREFIXES) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A model cache that stores imported dependency management in memory and on disk,
+	 * and delegates everything else to the default (per-request) cache.
+	 */
+	class PersistentModelCache implements org.apache.maven.model.building.ModelCache {
+
+		private final org.apache.maven.model.building.ModelCache delegate;
+
+		private final ModelResolver resolver;
+
+		private final File directory;
+
+		private final String properties;
+
+		PersistentModelCache(org.apache.maven.model.building.ModelCache delegate,
+				ModelResolver resolver, File directory, String properties) {
+			this.delegate = delegate;
+			this.resolver = resolver;
+			this.directory = directory;
+			this.properties = properties;
+		}
+
+		@Override
+		public void put(String groupId, String artifactId, String version, String tag,
+				Object data) {
+			this.delegate.put(groupId, artifactId, version, tag, data);
+			if (!IMPORT.equals(tag) || !(data instanceof DependencyManagement)) {
+				return;
+			}
+			String key = key(groupId, artifactId, version);
+			if (key == null) {
+				return;
+			}
+			DependencyManagement value = (DependencyManagement) data;
+			imports.put(key, value.clone());
+			File file = file(key);
+			try {
+				Model model = new Model();
+				model.setDependencyManagement(value);
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				new MavenXpp3Writer().write(bytes, model);
+				file.getParentFile().mkdirs();
+				// Write to a temporary file and rename so that concurrent launches never
+				// see a partial entry
+				File temp = File.createTempFile(key, ".tmp", file.getParentFile());
+				FileCopyUtils.copy(bytes.toByteArray(), temp);
+				if (!temp.renameTo(file)) {
+					temp.delete();
+				}
+				log.info("Stored imported model: " + groupId + ":" + artifactId + ":"
+						+ version);
+			}
+			catch (Exception e) {
+				// The cache is an optimization, so failing to write it is not fatal
+				log.info("Cannot write model cache entry: " + file, e);
+			}
+		}
+
+		@Override
+		public Object get(String groupId, String artifactId, String version,
+				String tag) {
+			Object result = this.delegate.get(groupId, artifactId, version, tag);
+			if (result != null || !IMPORT.equals(tag)) {
+				return result;
+			}
+			String key = key(groupId, artifactId, version);
+			if (key == null) {
+				return null;
+			}
+			DependencyManagement value = imports.get(key);
+			if (value == null) {
+				value = load(file(key));
+				if (value == null) {
+					return null;
+				}
+				imports.put(key, value);
+			}
+			log.info("Imported model cache hit: " + groupId + ":" + artifactId + ":"
+					+ version);
+			value = value.clone();
+			this.delegate.put(groupId, artifactId, version, tag, value);
+			return value;
+		}
+
+		private DependencyManagement load(File file) {
+			if (!file.exists()) {
+				return null;
+			}
+			try (InputStream stream = new ByteArrayInputStream(
+					FileCopyUtils.copyToByteArray(file))) {
+				DependencyManagement value = new MavenXpp3Reader().read(stream, false)
+						.getDependencyManagement();
+				return value == null ? new DependencyManagement() : value;
+			}
+			catch (Exception e) {
+				log.info("Cannot read model cache entry: " + file, e);
+				return null;
+			}
+		}
+
+		private String key(String groupId, String artifactId, String version) {
+			if (version == null || version.endsWith("-SNAPSHOT")
+					|| this.resolver == null) {
+				return null;
+			}
+			try {
+				ModelSource source = this.resolver.resolveModel(groupId, artifactId,
+						version);
+				MessageDigest digest = ClasspathCache.digest();
+				digest.update((groupId + ":" + artifactId + ":" + version + "\n")
+						.getBytes(UTF_8));
+				try (InputStream stream = source.getInputStream()) {
+					digest.update(StreamUtils.copyToByteArray(stream));
+				}
+				digest.update(this.properties.getBytes(UTF_8));
+				return ClasspathCache.hex(digest.digest());
+			}
+			catch (Exception e) {
+				log.info("Cannot locate model for cache: " + groupId + ":" + artifactId
+						+ ":" + version, e);
+				return null;
+			}
+		}
+
+		private File file(String key) {
+			return new File(this.directory, key + ".xml");
+		}
+
+	}
+
+}
@@ -25,8 +25,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.DependencyManagement;
@@ -35,7 +33,7 @@ import org.apache.maven.model.Model;
 import org.apache.maven.model.building.DefaultModelProcessor;
 import org.eclipse.aether.artifact.DefaultArtifact;
 
-import org.springframework.util.Assert;
+import org.springframework.boot.loader.thin.DependencyResolver.PropertiesModelSource;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.PropertyPlaceholderHelper;
 import org.springframework.util.StringUtils;
@@ -46,26 +44,16 @@ import org.springframework.util.StringUtils;
  */
 class ThinPropertiesModelProcessor extends DefaultModelProcessor {
 
-	/**
-	 * The default extension for the artifact.
-	 */
-	final static String DEFAULT_EXTENSION = "jar";
-
-	/**
-	 * String representing an empty classifier.
-	 */
-	final static String EMPTY_CLASSIFIER = "";
-
 	@Override
 	public Model read(File input, Map<String, ?> options) throws IOException {
 		Model model = super.read(input, options);
-		return process(model);
+		return process(model, options);
 	}
 
 	@Override
 	public Model read(Reader input, Map<String, ?> options) throws IOException {
 		Model model = super.read(input, options);
-		return process(model);
+		return process(model, options);
 	}
 
 	@Override
@@ -76,15 +64,21 @@ class ThinPropertiesModelProcessor extends DefaultModelProcessor {
 				public void close() throws IOException {
 				}
 			}, options);
-			return process(model);
+			return process(model, options);
 		}
 		finally {
 			input.close();
 		}
 	}
 
-	private Model process(Model model) {
-		Properties properties = DependencyResolver.getGlobals();
+	private Model process(Model model, Map<String, ?> options) {
+		// The thin properties only apply to the root model, which is the only one that
+		// comes from a PropertiesModelSource (so parents and BOMs are left alone)
+		Object source = options == null ? null : options.get(SOURCE);
+		Properties properties = null;
+		if (source instanceof PropertiesModelSource) {
+			properties = ((PropertiesModelSource) source).getProperties();
+		}
 		return process(model, properties);
 	}
 
@@ -236,42 +230,7 @@ class ThinPropertiesModelProcessor extends DefaultModelProcessor {
 	}
 
 	static DefaultArtifact artifact(String coordinates) {
-		Pattern p = Pattern
-				.compile("([^: ]+):([^: ]+)(:([^: ]*)(:([^: ]+))?)?(:([^: ]+))?");
-		Matcher m = p.matcher(coordinates);
-		Assert.isTrue(m.matches(), "Bad artifact coordinates " + coordinates
-				+ ", expected format is <groupId>:<artifactId>[:<extension>[:<classifier>]][:<version>]");
-		String groupId = m.group(1);
-		String artifactId = m.group(2);
-		String version = null;
-		String extension = DEFAULT_EXTENSION;
-		String classifier = EMPTY_CLASSIFIER;
-		if (StringUtils.hasLength(m.group(4))) {
-			extension = m.group(4);
-		}
-		if (StringUtils.hasLength(m.group(8))) {
-			version = m.group(8);
-		}
-		if (StringUtils.hasLength(m.group(6))) {
-			classifier = m.group(6);
-			if (version == null && isVersion(classifier)) {
-				version = classifier;
-				classifier = "";
-			}
-		}
-		else {
-			if (version == null && isVersion(extension)) {
-				version = extension;
-				extension = DEFAULT_EXTENSION;
-			}
-		}
-		return new DefaultArtifact(groupId, artifactId, classifier, extension, version);
-	}
-
-	private static boolean isVersion(String label) {
-		// Not a classifier or an extension (which are usually just simple alphabetic
-		// strings)
-		return label.endsWith("-SNAPSHOT") || !label.matches("[a-zA-Z]+[0-9]*");
+		return LocalArtifactResolver.artifact(coordinates);
 	}
 
 }
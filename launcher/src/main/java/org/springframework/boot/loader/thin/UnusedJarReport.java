@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Keeps track of the class path entries (jars and directories) that have served a class
+ * or a resource, so that the ones that were never used can be reported after a training
+ * run, with suggested <code>exclusions.*</code> entries for <code>thin.properties</code>.
+ * Only jars with Maven metadata (<code>META-INF/maven/.../pom.properties</code>) get a
+ * suggestion, and an unused jar is not necessarily safe to exclude (it might be needed
+ * by a code path that the training run didn't exercise).
+ *
+ * @author Dave Syer
+ *
+ */
+class UnusedJarReport {
+
+	private final Map<String, URL> entries = new LinkedHashMap<>();
+
+	private final Set<String> used = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * @param urls the class path entries to track
+	 */
+	public UnusedJarReport(URL[] urls) {
+		for (URL url : urls) {
+			this.entries.put(url.toString(), url);
+		}
+	}
+
+	/**
+	 * Record that a class was loaded from the class path.
+	 * @param type the class
+	 */
+	public void record(Class<?> type) {
+		CodeSource source = type.getProtectionDomain().getCodeSource();
+		if (source != null && source.getLocation() != null) {
+			record(source.getLocation());
+		}
+	}
+
+	/**
+	 * Record that a resource (or class path entry) was used.
+	 * @param url the URL of the resource
+	 */
+	public void record(URL url) {
+		String entry = entry(url.toString());
+		if (entry != null) {
+			this.used.add(entry);
+		}
+	}
+
+	private String entry(String path) {
+		if (this.entries.containsKey(path)) {
+			return path;
+		}
+		if (path.startsWith("jar:") && path.contains("!/")) {
+			String base = path.substring("jar:".length(), path.indexOf("!/"));
+			if (this.entries.containsKey(base)) {
+				return base;
+			}
+			if (this.entries.containsKey(path.substring(0, path.indexOf("!/") + 2))) {
+				return path.substring(0, path.indexOf("!/") + 2);
+			}
+		}
+		for (String entry : this.entries.keySet()) {
+			// A directory (or a nested entry)
+			if (entry.endsWith("/") && path.startsWith(entry)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The class path entries that have not served any classes or resources.
+	 * @return the unused entries
+	 */
+	public List<URL> getUnused() {
+		List<URL> result = new ArrayList<>();
+		for (Map.Entry<String, URL> entry : this.entries.entrySet()) {
+			if (!this.used.contains(entry.getKey())) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The report: a comment with every unused entry, and suggested exclusions for the
+	 * ones that have Maven coordinates.
+	 * @param warmup a description of the training run
+	 * @return the report in properties file format
+	 */
+	public String getReport(String warmup) {
+		List<URL> unused = getUnused();
+		StringBuilder builder = new StringBuilder();
+		builder.append("# Unused class path entries after ").append(warmup).append(": ")
+				.append(unused.size()).append(" of ").append(this.entries.size())
+				.append("\n");
+		builder.append("# Suggested exclusions for thin.properties (check them first!)\n");
+		for (URL url : unused) {
+			builder.append("# ").append(url).append("\n");
+			String[] coordinates = coordinates(url);
+			if (coordinates != null) {
+				builder.append("exclusions.").append(coordinates[1]).append("=")
+						.append(coordinates[0]).append(":").append(coordinates[1])
+						.append("\n");
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Write the report to a file.
+	 * @param file the file to write
+	 * @param warmup a description of the training run
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file, String warmup) throws IOException {
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		FileCopyUtils.copy(getReport(warmup).getBytes(Charset.forName("UTF-8")), file);
+	}
+
+	private String[] coordinates(URL url) {
+		if (!"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) {
+			return null;
+		}
+		try (JarFile jar = new JarFile(new File(new URI(url.toString())))) {
+			for (Enumeration<JarEntry> entries = jar.entries(); entries
+					.hasMoreElements();) {
+				JarEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (name.startsWith("META-INF/maven/")
+						&& name.endsWith("/pom.properties")) {
+					Properties properties = new Properties();
+					try (InputStream stream = jar.getInputStream(entry)) {
+						properties.load(stream);
+					}
+					String groupId = properties.getProperty("groupId");
+					String artifactId = properties.getProperty("artifactId");
+					if (groupId != null && artifactId != null) {
+						return new String[] { groupId, artifactId };
+					}
+				}
+			}
+		}
+		catch (Exception e) {
+			// Not a jar we can read
+		}
+		return null;
+	}
+
+}
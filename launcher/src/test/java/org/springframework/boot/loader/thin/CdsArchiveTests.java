@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class CdsArchiveTests {
+
+	private static final String WEB = "src/test/resources/app-with-web-in-lib-properties.jar";
+
+	private static final String CLOUD = "src/test/resources/app-with-web-and-cloud-config.jar";
+
+	private File directory = new File("target/thin/cds");
+
+	@Test
+	public void keyDependsOnClasspath() throws Exception {
+		String one = CdsArchive.key(WEB);
+		String two = CdsArchive.key(WEB + File.pathSeparator + CLOUD);
+		assertThat(one).isNotEqualTo(two);
+		assertThat(one).isEqualTo(CdsArchive.key(WEB));
+	}
+
+	@Test
+	public void createThenUse() throws Exception {
+		Assume.assumeTrue(CdsArchive.isSupported());
+		FileSystemUtils.deleteRecursively(directory);
+		CdsArchive archive = new CdsArchive(directory, "target/classes");
+		assertThat(archive.getJvmOptions().get(0))
+				.startsWith("-XX:ArchiveClassesAtExit=");
+		assertThat(archive.complete()).isFalse();
+		FileCopyUtils.copy(new byte[0], archive.getFile());
+		archive = new CdsArchive(directory, "target/classes");
+		assertThat(archive.getJvmOptions()).contains(
+				"-XX:SharedArchiveFile=" + archive.getFile().getAbsolutePath());
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.aether.graph.Dependency;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class DependencyResolverConcurrencyTests {
+
+	private static final int THREADS = 8;
+
+	private DependencyResolver resolver = DependencyResolver.instance();
+
+	private ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	@After
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void propertiesAreNotShared() throws Exception {
+		final Resource resource = new ClassPathResource("META-INF/thin/empty-pom.xml");
+		// Warm up the container
+		resolver.dependencies(resource);
+		// Every resolution waits for all the others to start reading the pom, so they
+		// cannot complete unless they overlap
+		final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger overlap = new AtomicInteger();
+		List<Future<List<Dependency>>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			final Properties properties = new Properties();
+			if (i % 2 == 0) {
+				properties.setProperty("dependencies.spring-core",
+						"org.springframework:spring-core");
+			}
+			final Resource pom = new BarrierResource("META-INF/thin/empty-pom.xml",
+					barrier, active, overlap);
+			results.add(executor.submit(new Callable<List<Dependency>>() {
+				@Override
+				public List<Dependency> call() throws Exception {
+					return resolver.dependencies(pom, properties);
+				}
+			}));
+		}
+		for (int i = 0; i < THREADS; i++) {
+			List<Dependency> dependencies = results.get(i).get(60, TimeUnit.SECONDS);
+			if (i % 2 == 0) {
+				assertThat(dependencies)
+						.filteredOn("artifact.artifactId", "spring-core").hasSize(1);
+			}
+			else {
+				assertThat(dependencies).isEmpty();
+			}
+		}
+		assertThat(overlap.get()).isEqualTo(THREADS);
+	}
+
+	private static class BarrierResource extends ClassPathResource {
+
+		private final CyclicBarrier barrier;
+
+		private final AtomicInteger active;
+
+		private final AtomicInteger overlap;
+
+		private final AtomicBoolean waited = new AtomicBoolean();
+
+		BarrierResource(String path, CyclicBarrier barrier, AtomicInteger active,
+				AtomicInteger overlap) {
+			super(path);
+			this.barrier = barrier;
+			this.active = active;
+			this.overlap = overlap;
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			if (this.waited.compareAndSet(false, true)) {
+				int count = this.active.incrementAndGet();
+				synchronized (this.overlap) {
+					this.overlap.set(Math.max(this.overlap.get(), count));
+				}
+				try {
+					this.barrier.await(10, TimeUnit.SECONDS);
+				}
+				catch (Exception e) {
+					throw new IOException("Resolutions did not overlap", e);
+				}
+				finally {
+					this.active.decrementAndGet();
+				}
+			}
+			return super.getInputStream();
+		}
+
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Test;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class LocalArtifactResolverTests {
+
+	@Test
+	public void path() throws Exception {
+		assertThat(LocalArtifactResolver
+				.path(new DefaultArtifact("com.example:foo:1.0")))
+						.isEqualTo("com/example/foo/1.0/foo-1.0.jar");
+	}
+
+	@Test
+	public void pathWithClassifier() throws Exception {
+		assertThat(LocalArtifactResolver
+				.path(new DefaultArtifact("com.example:foo:zip:weird:1.0")))
+						.isEqualTo("com/example/foo/1.0/foo-1.0-weird.zip");
+	}
+
+	@Test
+	public void pathWithTimestampedSnapshot() throws Exception {
+		assertThat(LocalArtifactResolver
+				.path(new DefaultArtifact("com.example:foo:1.0-20170101.120000-1")))
+						.isEqualTo(
+								"com/example/foo/1.0-SNAPSHOT/foo-1.0-20170101.120000-1.jar");
+	}
+
+	@Test
+	public void find() throws Exception {
+		File repository = new File("target/thin/local");
+		FileSystemUtils.deleteRecursively(repository);
+		File jar = new File(repository, "com/example/foo/1.0/foo-1.0.jar");
+		jar.getParentFile().mkdirs();
+		FileCopyUtils.copy(new byte[0], jar);
+		LocalArtifactResolver resolver = new LocalArtifactResolver(repository);
+		Artifact artifact = resolver.find(new DefaultArtifact("com.example:foo:1.0"));
+		assertThat(artifact.getFile()).isEqualTo(jar);
+		assertThat(resolver.find(new DefaultArtifact("com.example:bar:1.0"))).isNull();
+	}
+
+	@Test
+	public void artifacts() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("computed", "true");
+		properties.setProperty("foo.version", "1.0");
+		properties.setProperty("dependencies.foo", "com.example:foo:${foo.version}");
+		properties.setProperty("dependencies.bar", "com.example:bar:2.0");
+		properties.setProperty("exclusions.bar", "com.example:bar");
+		List<Artifact> artifacts = LocalArtifactResolver.artifacts(properties);
+		assertThat(artifacts).hasSize(1);
+		assertThat(artifacts.get(0).getVersion()).isEqualTo("1.0");
+	}
+
+}
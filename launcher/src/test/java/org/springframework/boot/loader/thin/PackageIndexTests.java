@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.net.URL;
+
+import org.junit.Test;
+
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class PackageIndexTests {
+
+	private static final String WEB = "src/test/resources/app-with-web-in-lib-properties.jar";
+
+	private File directory = new File("target/thin/index");
+
+	@Test
+	public void directory() throws Exception {
+		assertThat(PackageIndex.directory("org/foo/Bar.class")).isEqualTo("org/foo/");
+		assertThat(PackageIndex.directory("/META-INF/thin.properties"))
+				.isEqualTo("META-INF/");
+		assertThat(PackageIndex.directory("application.properties")).isEqualTo("");
+	}
+
+	@Test
+	public void jar() throws Exception {
+		URL url = new File(WEB).toURI().toURL();
+		PackageIndex index = PackageIndex.load(new URL[] { url }, null);
+		assertThat(index.isComplete()).isTrue();
+		assertThat(index.mayContain("com/example/LauncherApplication.class")).isTrue();
+		assertThat(index.mayContain("com/example/Missing.class")).isTrue();
+		assertThat(index.mayContain("application.properties")).isTrue();
+		assertThat(index.mayContain("org/springframework/boot/Foo.class")).isTrue();
+		assertThat(index.mayContain("java/lang/String.class")).isFalse();
+		assertThat(index.mayContain("org/slf4j/Logger.class")).isFalse();
+		assertThat(index.getCandidates("com/example/Foo.class").get(0)).isTrue();
+		assertThat(index.getCandidates("java/lang/String.class").isEmpty()).isTrue();
+	}
+
+	@Test
+	public void nested() throws Exception {
+		URL url = new URL("jar:" + new File(WEB).toURI().toURL() + "!/META-INF/maven/");
+		PackageIndex index = PackageIndex.load(new URL[] { url }, null);
+		assertThat(index.isComplete()).isTrue();
+		assertThat(index.mayContain("com.example/app/pom.xml")).isTrue();
+		assertThat(index.mayContain("com/example/LauncherApplication.class")).isFalse();
+	}
+
+	@Test
+	public void unknownUrl() throws Exception {
+		PackageIndex index = PackageIndex
+				.load(new URL[] { new URL("http://example.com/foo.jar") }, null);
+		assertThat(index.isComplete()).isFalse();
+		assertThat(index.mayContain("java/lang/String.class")).isTrue();
+		assertThat(index.getCandidates("java/lang/String.class")).isNull();
+	}
+
+	@Test
+	public void cached() throws Exception {
+		FileSystemUtils.deleteRecursively(directory);
+		URL[] urls = new URL[] { new File(WEB).toURI().toURL() };
+		PackageIndex.load(urls, directory);
+		assertThat(directory.listFiles()).hasSize(1);
+		PackageIndex index = PackageIndex.load(urls, directory);
+		assertThat(index.mayContain("com/example/Foo.class")).isTrue();
+		assertThat(index.mayContain("java/lang/String.class")).isFalse();
+	}
+
+	@Test
+	public void directoriesNotCached() throws Exception {
+		FileSystemUtils.deleteRecursively(directory);
+		URL[] urls = new URL[] { new File("target/test-classes").toURI().toURL() };
+		PackageIndex index = PackageIndex.load(urls, directory);
+		assertThat(index.mayContain(
+				"org/springframework/boot/loader/thin/PackageIndexTests.class")).isTrue();
+		assertThat(directory.exists()).isFalse();
+	}
+
+}
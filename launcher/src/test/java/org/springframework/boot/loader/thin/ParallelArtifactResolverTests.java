@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ParallelArtifactResolverTests {
+
+	private RepositorySystem system = Mockito.mock(RepositorySystem.class);
+
+	private ParallelArtifactResolver resolver = new ParallelArtifactResolver(system, 4);
+
+	@Test
+	public void duplicatesResolvedOnce() throws Exception {
+		Mockito.when(system.resolveArtifact(any(RepositorySystemSession.class),
+				any(ArtifactRequest.class))).thenAnswer(new Answer<ArtifactResult>() {
+					@Override
+					public ArtifactResult answer(InvocationOnMock invocation)
+							throws Throwable {
+						ArtifactRequest request = (ArtifactRequest) invocation
+								.getArguments()[1];
+						return new ArtifactResult(request)
+								.setArtifact(request.getArtifact());
+					}
+				});
+		List<ArtifactResult> results = resolver.resolve(
+				new DefaultRepositorySystemSession(),
+				Arrays.asList(request("com.example:foo:1.0"),
+						request("com.example:bar:1.0"), request("com.example:foo:1.0")));
+		assertThat(results).hasSize(3);
+		assertThat(results.get(2).getArtifact().getArtifactId()).isEqualTo("foo");
+		Mockito.verify(system, Mockito.times(2)).resolveArtifact(
+				any(RepositorySystemSession.class), any(ArtifactRequest.class));
+	}
+
+	@Test(expected = ArtifactResolutionException.class)
+	public void failure() throws Exception {
+		Mockito.when(system.resolveArtifact(any(RepositorySystemSession.class),
+				any(ArtifactRequest.class))).thenAnswer(new Answer<ArtifactResult>() {
+					@Override
+					public ArtifactResult answer(InvocationOnMock invocation)
+							throws Throwable {
+						ArtifactRequest request = (ArtifactRequest) invocation
+								.getArguments()[1];
+						ArtifactResult result = new ArtifactResult(request);
+						throw new ArtifactResolutionException(Arrays.asList(result));
+					}
+				});
+		resolver.resolve(new DefaultRepositorySystemSession(),
+				Arrays.asList(request("com.example:foo:1.0")));
+	}
+
+	private ArtifactRequest request(String coordinates) {
+		return new ArtifactRequest(new DefaultArtifact(coordinates), null, null);
+	}
+
+}
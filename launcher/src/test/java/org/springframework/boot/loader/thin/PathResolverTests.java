@@ -16,6 +16,7 @@
 package org.springframework.boot.loader.thin;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
@@ -30,6 +31,8 @@ import org.springframework.boot.loader.archive.Archive;
 import org.springframework.boot.loader.archive.ExplodedArchive;
 import org.springframework.core.io.Resource;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -60,6 +63,144 @@ public class PathResolverTests {
 		// Mockito.verify(dependencies);
 	}
 
+	@Test
+	public void cachedClasspath() throws Exception {
+		FileSystemUtils.deleteRecursively(new File("target/thin/cache"));
+		resolver.setRoot("target/thin/cache");
+		resolver.setCache(true);
+		Archive parent = new ExplodedArchive(
+				new File("src/test/resources/apps/petclinic"));
+		Artifact artifact = new DefaultArtifact("org.foo:whatever:1.2.3");
+		artifact = artifact.setFile(
+				new File("src/test/resources/app-with-web-in-lib-properties.jar"));
+		List<Dependency> list = Arrays.asList(new Dependency(artifact, "compile"));
+		Mockito.when(
+				dependencies.dependencies(any(Resource.class), any(Properties.class)))
+				.thenReturn(list);
+		List<Archive> result = resolver.resolve(parent, "thin");
+		assertThat(result.size()).isEqualTo(2);
+		result = resolver.resolve(parent, "thin");
+		assertThat(result.size()).isEqualTo(2);
+		assertThat(result.get(1).getUrl())
+				.isEqualTo(artifact.getFile().getAbsoluteFile().toURI().toURL());
+		Mockito.verify(dependencies, Mockito.times(1))
+				.dependencies(any(Resource.class), any(Properties.class));
+		assertThat(new File("target/thin/cache/thin/classpath").list()).hasSize(1);
+	}
+
+	@Test
+	public void cachedClasspathIgnoresDownloadThreads() throws Exception {
+		Archive parent = cachedApp();
+		resolver.resolve(parent, "thin");
+		resolver.setDownloadThreads("8");
+		List<Archive> result = resolver.resolve(parent, "thin");
+		assertThat(result.size()).isEqualTo(2);
+		Mockito.verify(dependencies, Mockito.times(1))
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	@Test
+	public void cachedClasspathNotUsedForReport() throws Exception {
+		Archive parent = cachedApp();
+		resolver.resolve(parent, "thin");
+		resolver.setResolutionReport("target/thin/cache/report.json");
+		List<Archive> result = resolver.resolve(parent, "thin");
+		assertThat(result.size()).isEqualTo(2);
+		Mockito.verify(dependencies, Mockito.times(2))
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	private Archive cachedApp() throws Exception {
+		FileSystemUtils.deleteRecursively(new File("target/thin/cache"));
+		resolver.setRoot("target/thin/cache");
+		resolver.setCache(true);
+		Artifact artifact = new DefaultArtifact("org.foo:whatever:1.2.3");
+		artifact = artifact.setFile(
+				new File("src/test/resources/app-with-web-in-lib-properties.jar"));
+		Mockito.when(
+				dependencies.dependencies(any(Resource.class), any(Properties.class)))
+				.thenReturn(Arrays.asList(new Dependency(artifact, "compile")));
+		return new ExplodedArchive(new File("src/test/resources/apps/petclinic"));
+	}
+
+	@Test
+	public void lockFile() throws Exception {
+		File app = lockedApp("org.foo:whatever:1.2.3");
+		Mockito.when(dependencies.getLocalRepository(any(Properties.class)))
+				.thenReturn(new File("target/thin/lock/repository"));
+		resolver.setLock("verify");
+		List<Archive> result = resolver.resolve(new ExplodedArchive(app), "thin");
+		assertThat(result.size()).isEqualTo(2);
+		assertThat(result.get(1).getUrl()).isEqualTo(new File(
+				"target/thin/lock/repository/org/foo/whatever/1.2.3/whatever-1.2.3.jar")
+						.toURI().toURL());
+		Mockito.verify(dependencies, Mockito.never())
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	@Test
+	public void lockFileDoesNotMatch() throws Exception {
+		File app = lockedApp("org.foo:whatever:1.2.4");
+		Mockito.when(dependencies.getLocalRepository(any(Properties.class)))
+				.thenReturn(new File("target/thin/lock/repository"));
+		Mockito.when(
+				dependencies.dependencies(any(Resource.class), any(Properties.class)))
+				.thenReturn(new ArrayList<Dependency>());
+		resolver.setLock("true");
+		resolver.resolve(new ExplodedArchive(app), "thin");
+		Mockito.verify(dependencies, Mockito.times(1))
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	@Test
+	public void lockFileNotUsedByDefault() throws Exception {
+		File app = lockedApp("org.foo:whatever:1.2.3");
+		Mockito.when(
+				dependencies.dependencies(any(Resource.class), any(Properties.class)))
+				.thenReturn(new ArrayList<Dependency>());
+		resolver.resolve(new ExplodedArchive(app), "thin");
+		Mockito.verify(dependencies, Mockito.times(1))
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	@Test
+	public void lockFileWithExclusion() throws Exception {
+		File app = lockedApp("org.foo:whatever:1.2.3",
+				"dependencies.other=org.foo:other:1.0\n"
+						+ "exclusions.excluded=org.foo:other\n");
+		Mockito.when(dependencies.getLocalRepository(any(Properties.class)))
+				.thenReturn(new File("target/thin/lock/repository"));
+		resolver.setLock("true");
+		List<Archive> result = resolver.resolve(new ExplodedArchive(app), "thin");
+		assertThat(result.size()).isEqualTo(2);
+		Mockito.verify(dependencies, Mockito.never())
+				.dependencies(any(Resource.class), any(Properties.class));
+	}
+
+	private File lockedApp(String dependency) throws Exception {
+		return lockedApp(dependency, "");
+	}
+
+	private File lockedApp(String dependency, String extra) throws Exception {
+		FileSystemUtils.deleteRecursively(new File("target/thin/lock"));
+		File jar = new File(
+				"target/thin/lock/repository/org/foo/whatever/1.2.3/whatever-1.2.3.jar");
+		jar.getParentFile().mkdirs();
+		FileCopyUtils.copy(
+				new File("src/test/resources/app-with-web-in-lib-properties.jar"), jar);
+		File app = new File("target/thin/lock/app");
+		new File(app, "META-INF").mkdirs();
+		FileCopyUtils.copy(
+				("computed=true\ndependencies.whatever=" + dependency + "\n" + extra)
+						.getBytes(),
+				new File(app, "META-INF/thin.properties"));
+		FileCopyUtils.copy(("org.foo:whatever:1.2.3 "
+				+ "org/foo/whatever/1.2.3/whatever-1.2.3.jar " + jar.length() + " "
+				+ LockFile.sha256(jar) + " central\n").getBytes(),
+				new File(app, "META-INF/thin.lock"));
+		return app;
+	}
+
 	@Test
 	public void properties() throws Exception {
 		Archive parent = new ExplodedArchive(
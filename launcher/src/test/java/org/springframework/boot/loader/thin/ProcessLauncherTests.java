@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ProcessLauncherTests {
+
+	@Test
+	public void command() throws Exception {
+		ProcessLauncher launcher = new ProcessLauncher("com.example.Main",
+				"foo.jar" + File.pathSeparator + "bar.jar");
+		launcher.addArgs("--server.port=0");
+		List<String> command = launcher.getCommand();
+		assertThat(command.get(0)).isEqualTo(ProcessLauncher.getJava());
+		assertThat(command).containsSequence("-cp",
+				"foo.jar" + File.pathSeparator + "bar.jar", "com.example.Main",
+				"--server.port=0");
+	}
+
+	@Test
+	public void argFile() throws Exception {
+		File file = new File("target/thin/exec/test.args");
+		ProcessLauncher launcher = new ProcessLauncher("com.example.Main",
+				"C:\\foo bar\\foo.jar");
+		launcher.writeArgFile(file);
+		String content = new String(FileCopyUtils.copyToByteArray(file), "UTF-8");
+		assertThat(content)
+				.isEqualTo("-cp\n\"C:\\\\foo bar\\\\foo.jar\"\ncom.example.Main\n");
+		if (ProcessLauncher.isArgFileSupported()) {
+			assertThat(launcher.getCommand())
+					.contains("@" + file.getAbsolutePath());
+		}
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		File directory = new File("target/thin/web");
+		FileSystemUtils.deleteRecursively(directory);
+		ProcessLauncher launcher = new ProcessLauncher(WebSample.class.getName(),
+				webJar(directory).getAbsolutePath());
+		launcher.run(3);
+		assertThat(launcher.isTimedOut()).isTrue();
+	}
+
+	@Test
+	public void trainCdsArchiveForWebApp() throws Exception {
+		Assume.assumeTrue(CdsArchive.isSupported());
+		File directory = new File("target/thin/web");
+		FileSystemUtils.deleteRecursively(directory);
+		String classpath = webJar(directory).getAbsolutePath();
+		CdsArchive archive = new CdsArchive(new File(directory, "cds"), classpath);
+		ProcessLauncher launcher = new ProcessLauncher(WebSample.class.getName(),
+				classpath);
+		launcher.addOptions(archive.getJvmOptions());
+		// The server never exits on its own, so training has to stop it
+		launcher.run(5);
+		assertThat(launcher.isTimedOut()).isTrue();
+		assertThat(archive.complete()).isTrue();
+	}
+
+	private File webJar(File directory) throws IOException {
+		// CDS only archives classes from jars (not directories)
+		String name = WebSample.class.getName().replace(".", "/") + ".class";
+		String handler = WebSample.class.getName().replace(".", "/") + "$1.class";
+		File jar = new File(directory, "web.jar");
+		directory.mkdirs();
+		try (JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar))) {
+			for (String entry : new String[] { name, handler }) {
+				stream.putNextEntry(new JarEntry(entry));
+				stream.write(FileCopyUtils
+						.copyToByteArray(new File("target/test-classes", entry)));
+				stream.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	/**
+	 * A web server that never exits on its own.
+	 */
+	public static class WebSample {
+
+		public static void main(String[] args) throws Exception {
+			HttpServer server = HttpServer.create(
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+			server.createContext("/", new HttpHandler() {
+				@Override
+				public void handle(HttpExchange exchange) throws IOException {
+					byte[] body = "Hello World".getBytes("UTF-8");
+					exchange.sendResponseHeaders(200, body.length);
+					try (OutputStream stream = exchange.getResponseBody()) {
+						stream.write(body);
+					}
+				}
+			});
+			server.start();
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class RepositoryRoutesTests {
+
+	private static final File ROUTING = new File("target/thin/routing");
+
+	private RemoteRepository local = new RemoteRepository.Builder("local", "default",
+			"file:///tmp/repository").build();
+
+	private RemoteRepository snapshots = new RemoteRepository.Builder(
+			"spring-snapshots", "default", "https://repo.spring.io/libs-snapshot")
+					.build();
+
+	private RemoteRepository central = new RemoteRepository.Builder("central",
+			"default", "https://repo1.maven.org/maven2").build();
+
+	private List<RemoteRepository> repositories = Arrays.asList(local, snapshots,
+			central);
+
+	@Before
+	public void init() {
+		FileSystemUtils.deleteRecursively(ROUTING);
+	}
+
+	@Test
+	public void defaultOrder() throws Exception {
+		RepositoryRoutes routes = new RepositoryRoutes(ROUTING, 7);
+		assertThat(routes.route(artifact("com.example:lib:1.0"), repositories))
+				.containsExactly(local, snapshots, central);
+	}
+
+	@Test
+	public void learnedAndPersisted() throws Exception {
+		new RepositoryRoutes(ROUTING, 7).learn(
+				result(artifact("org.springframework:spring-core:4.3.0"), central));
+		assertThat(new File(ROUTING, "routes.properties")).exists();
+		RepositoryRoutes routes = new RepositoryRoutes(ROUTING, 7);
+		assertThat(routes.route(artifact("org.springframework:spring-core:4.3.0"),
+				repositories)).containsExactly(local, central, snapshots);
+		// Child groups use the parent's route
+		assertThat(routes.route(artifact("org.springframework.retry:spring-retry:1.2.0"),
+				repositories)).containsExactly(local, central, snapshots);
+	}
+
+	@Test
+	public void snapshotsNotRouted() throws Exception {
+		RepositoryRoutes routes = new RepositoryRoutes(ROUTING, 7);
+		routes.learn(result(artifact("com.example:lib:1.0"), central));
+		assertThat(routes.route(artifact("com.example:lib:1.1-SNAPSHOT"), repositories))
+				.containsExactly(local, snapshots, central);
+	}
+
+	@Test
+	public void expired() throws Exception {
+		RepositoryRoutes routes = new RepositoryRoutes(ROUTING, 0);
+		routes.learn(result(artifact("com.example:lib:1.0"), central));
+		Thread.sleep(10L);
+		assertThat(routes.route(artifact("com.example:lib:1.0"), repositories))
+				.containsExactly(local, snapshots, central);
+	}
+
+	@Test
+	public void localNotLearned() throws Exception {
+		RepositoryRoutes routes = new RepositoryRoutes(ROUTING, 7);
+		routes.learn(result(artifact("com.example:lib:1.0"), local));
+		assertThat(new File(ROUTING, "routes.properties")).doesNotExist();
+	}
+
+	private Artifact artifact(String coordinates) {
+		return new DefaultArtifact(coordinates);
+	}
+
+	private List<ArtifactResult> result(Artifact artifact, RemoteRepository repository) {
+		ArtifactResult result = new ArtifactResult(new ArtifactRequest());
+		result.setArtifact(artifact.setFile(new File("target/lib.jar")));
+		result.setRepository(repository);
+		return Collections.singletonList(result);
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositoryEvent.EventType;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ResolutionReportTests {
+
+	private ResolutionReport report = new ResolutionReport();
+
+	private DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+
+	private Artifact artifact = new DefaultArtifact("com.example:lib:jar:1.0");
+
+	private RemoteRepository snapshots = new RemoteRepository.Builder(
+			"spring-snapshots", "default", "https://repo.spring.io/libs-snapshot")
+					.build();
+
+	private RemoteRepository central = new RemoteRepository.Builder("central",
+			"default", "https://repo1.maven.org/maven2").build();
+
+	@Before
+	public void init() {
+		report.register(session);
+	}
+
+	@Test
+	public void downloaded() throws Exception {
+		File file = new File("target/repository/com/example/lib/1.0/lib-1.0.jar");
+		event(EventType.ARTIFACT_RESOLVING, null, null);
+		event(EventType.ARTIFACT_DOWNLOADING, snapshots, null);
+		event(EventType.ARTIFACT_DOWNLOADED, snapshots,
+				new ArtifactNotFoundException(artifact, snapshots));
+		event(EventType.ARTIFACT_DOWNLOADING, central, null);
+		TransferResource resource = new TransferResource(central.getUrl(),
+				"com/example/lib/1.0/lib-1.0.jar", file, null);
+		session.getTransferListener().transferSucceeded(
+				new TransferEvent.Builder(session, resource)
+						.setType(TransferEvent.EventType.SUCCEEDED)
+						.setRequestType(TransferEvent.RequestType.GET)
+						.setTransferredBytes(1234).build());
+		event(EventType.ARTIFACT_DOWNLOADED, central, null, file);
+		event(EventType.ARTIFACT_RESOLVED, central, null, file);
+		String json = report.toJson();
+		assertThat(json).contains("\"id\":\"com.example:lib:jar:1.0\"");
+		assertThat(json).contains("\"repository\":\"central\"");
+		assertThat(json).contains("\"local\":false");
+		assertThat(json).contains("\"attempts\":2");
+		assertThat(json).contains("\"failed\":[\"spring-snapshots\"]");
+		assertThat(json).contains("\"bytes\":1234");
+	}
+
+	@Test
+	public void localHit() throws Exception {
+		File file = new File("target/repository/com/example/lib/1.0/lib-1.0.jar");
+		event(EventType.ARTIFACT_RESOLVING, null, null);
+		RepositoryEvent event = new RepositoryEvent.Builder(session,
+				EventType.ARTIFACT_RESOLVED).setArtifact(artifact)
+						.setRepository(new LocalRepository("target/repository"))
+						.setFile(file).build();
+		session.getRepositoryListener().artifactResolved(event);
+		String json = report.toJson();
+		assertThat(json).contains("\"repository\":\"local\"");
+		assertThat(json).contains("\"local\":true");
+		assertThat(json).contains("\"attempts\":0");
+	}
+
+	@Test
+	public void computed() throws Exception {
+		report.local(artifact.setFile(new File("target/lib-1.0.jar")), 1000000);
+		String json = report.toJson();
+		assertThat(json).contains("\"type\":\"jar\"");
+		assertThat(json).contains("\"local\":true");
+		assertThat(json).contains("\"latency\":1.000");
+	}
+
+	@Test
+	public void writeFile() throws Exception {
+		File file = new File("target/thin/report.json");
+		file.delete();
+		report.local(artifact.setFile(new File("target/lib-1.0.jar")), 0);
+		report.write(file.getPath());
+		assertThat(file).exists();
+	}
+
+	private void event(EventType type, RemoteRepository repository, Exception error) {
+		event(type, repository, error, null);
+	}
+
+	private void event(EventType type, RemoteRepository repository, Exception error,
+			File file) {
+		RepositoryEvent.Builder builder = new RepositoryEvent.Builder(session, type)
+				.setArtifact(artifact).setRepository(repository).setFile(file);
+		if (error != null) {
+			builder.setException(error);
+		}
+		RepositoryEvent event = builder.build();
+		switch (type) {
+		case ARTIFACT_RESOLVING:
+			session.getRepositoryListener().artifactResolving(event);
+			break;
+		case ARTIFACT_DOWNLOADING:
+			session.getRepositoryListener().artifactDownloading(event);
+			break;
+		case ARTIFACT_DOWNLOADED:
+			session.getRepositoryListener().artifactDownloaded(event);
+			break;
+		default:
+			session.getRepositoryListener().artifactResolved(event);
+		}
+	}
+
+}
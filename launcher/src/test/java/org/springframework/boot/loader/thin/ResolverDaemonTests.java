@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ResolverDaemonTests {
+
+	private static final File DIRECTORY = new File("target/thin/daemon");
+
+	@Before
+	public void init() {
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+	}
+
+	@Test
+	public void publishesAndExitsWhenIdle() throws Exception {
+		Thread thread = daemon();
+		File file = new File(DIRECTORY, "daemon.properties");
+		for (int i = 0; i < 50 && !file.exists(); i++) {
+			Thread.sleep(100);
+		}
+		Properties properties = load(file);
+		assertThat(properties.getProperty("port")).isNotEmpty();
+		assertThat(properties.getProperty("token")).hasSize(32);
+		thread.join(10000);
+		assertThat(thread.isAlive()).isFalse();
+		assertThat(file.exists()).isFalse();
+	}
+
+	@Test
+	public void invalidToken() throws Exception {
+		Thread thread = daemon();
+		File file = new File(DIRECTORY, "daemon.properties");
+		for (int i = 0; i < 50 && !file.exists(); i++) {
+			Thread.sleep(100);
+		}
+		Properties properties = load(file);
+		Properties response = new Properties();
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				Integer.valueOf(properties.getProperty("port")))) {
+			Properties request = new Properties();
+			request.setProperty("token", "wrong");
+			request.setProperty("arg.0", "--thin.archive=target");
+			try (OutputStream stream = socket.getOutputStream()) {
+				request.store(stream, null);
+				socket.shutdownOutput();
+				response.load(socket.getInputStream());
+			}
+		}
+		assertThat(response.getProperty("error")).isEqualTo("Invalid token");
+		assertThat(response.getProperty("classpath.0")).isNull();
+		thread.join(10000);
+	}
+
+	@Test
+	public void silentClient() throws Exception {
+		Thread thread = daemon();
+		File file = new File(DIRECTORY, "daemon.properties");
+		for (int i = 0; i < 50 && !file.exists(); i++) {
+			Thread.sleep(100);
+		}
+		Properties properties = load(file);
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+				Integer.valueOf(properties.getProperty("port")))) {
+			// Never send a request: the daemon should give up on it and exit when idle
+			thread.join(30000);
+			assertThat(thread.isAlive()).isFalse();
+		}
+	}
+
+	private Thread daemon() {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					new ResolverDaemon(DIRECTORY, 1).run();
+				}
+				catch (Exception e) {
+					throw new IllegalStateException("Daemon failed", e);
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private Properties load(File file) throws Exception {
+		Properties properties = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			properties.load(stream);
+		}
+		return properties;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ThinJarClassLoaderTests {
+
+	private static final String WEB = "src/test/resources/app-with-web-in-lib-properties.jar";
+
+	private ThinJarClassLoader loader;
+
+	@Before
+	public void init() throws Exception {
+		loader = new ThinJarClassLoader(new URL[] { new File(WEB).toURI().toURL() },
+				ClassLoader.getSystemClassLoader().getParent(), null);
+		loader.setParentFirst(true);
+	}
+
+	@After
+	public void close() throws Exception {
+		loader.close();
+	}
+
+	@Test
+	public void resourceCached() throws Exception {
+		URL url = loader.getResource("application.properties");
+		assertThat(url).isNotNull();
+		assertThat(loader.getResource("application.properties")).isEqualTo(url);
+		assertThat(loader.getResourceCacheMisses()).isEqualTo(1);
+		assertThat(loader.getResourceCacheHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void missingResourceCached() throws Exception {
+		assertThat(loader.getResource("com/example/missing.properties")).isNull();
+		assertThat(loader.getResource("com/example/missing.properties")).isNull();
+		assertThat(loader.getResourceCacheMisses()).isEqualTo(1);
+		assertThat(loader.getResourceCacheHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void resourcesCached() throws Exception {
+		assertThat(Collections.list(loader.getResources("META-INF/thin.properties")))
+				.hasSize(1);
+		assertThat(Collections.list(loader.getResources("META-INF/thin.properties")))
+				.hasSize(1);
+		assertThat(Collections.list(loader.getResources("META-INF/missing.factories")))
+				.isEmpty();
+		assertThat(Collections.list(loader.getResources("META-INF/missing.factories")))
+				.isEmpty();
+		assertThat(loader.getResourceCacheMisses()).isEqualTo(2);
+		assertThat(loader.getResourceCacheHits()).isEqualTo(2);
+	}
+
+	@Test
+	public void classNotInIndex() throws Exception {
+		assertThat(loader.loadClass("java.lang.String")).isEqualTo(String.class);
+	}
+
+	@Test
+	public void classInIndex() throws Exception {
+		assertThat(loader.loadClass("com.example.LauncherApplication").getClassLoader())
+				.isSameAs(loader);
+	}
+
+	@Test
+	public void classFromCandidate() throws Exception {
+		URL jar = new File(WEB).toURI().toURL();
+		Class<?> type = loader.loadClass("com.example.LauncherApplication");
+		assertThat(type.getProtectionDomain().getCodeSource().getLocation())
+				.isEqualTo(jar);
+		assertThat(type.getPackage()).isNotNull();
+		assertThat(loader.getResource("com/example/LauncherApplication.class"))
+				.hasToString("jar:" + jar + "!/com/example/LauncherApplication.class");
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void classMissingFromCandidate() throws Exception {
+		loader.loadClass("com.example.Missing");
+	}
+
+	@Test
+	public void usageTracked() throws Exception {
+		UnusedJarReport usage = new UnusedJarReport(loader.getURLs());
+		loader.setUsage(usage);
+		assertThat(usage.getUnused()).hasSize(1);
+		assertThat(usage.getReport("test")).contains("app-with-web-in-lib-properties");
+		loader.loadClass("com.example.LauncherApplication");
+		assertThat(usage.getUnused()).isEmpty();
+	}
+
+}
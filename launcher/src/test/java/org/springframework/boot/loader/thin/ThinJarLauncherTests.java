@@ -16,8 +16,11 @@
 package org.springframework.boot.loader.thin;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.Collections;
 import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.graph.Dependency;
@@ -29,6 +32,7 @@ import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.rule.OutputCapture;
 import org.springframework.core.io.Resource;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileCopyUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -116,6 +120,21 @@ public class ThinJarLauncherTests {
 		ThinJarLauncher.main(args);
 	}
 
+	@Test
+	public void timing() throws Exception {
+		File report = new File("target/thin/timing.json");
+		report.delete();
+		String[] args = new String[] { "--thin.dryrun=true",
+				"--thin.archive=src/test/resources/apps/basic",
+				"--thin.timing=" + report.getPath() };
+		ThinJarLauncher.main(args);
+		StartupTimer.disable();
+		String json = new String(FileCopyUtils.copyToByteArray(report));
+		assertThat(json).contains("\"name\":\"archive\"");
+		assertThat(json).contains("\"name\":\"properties\"");
+		assertThat(json).contains("\"total\":");
+	}
+
 	@Test
 	public void classpath() throws Exception {
 		String[] args = new String[] { "--thin.classpath",
@@ -259,6 +278,31 @@ public class ThinJarLauncherTests {
 				.exists()).isTrue();
 	}
 
+	@Test
+	public void badDaemonIdle() throws Exception {
+		expected.expect(RuntimeException.class);
+		expected.expectMessage("thin.daemon=often");
+		String[] args = new String[] { "--thin.root=target/thin/test",
+				"--thin.dryrun=true", "--thin.archive=src/test/resources/apps/basic",
+				"--thin.daemon=often" };
+		ThinJarLauncher.main(args);
+	}
+
+	@Test
+	public void execPackedFatJar() throws Exception {
+		File jar = new File("target/thin/packed/app.jar");
+		jar.getParentFile().mkdirs();
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new JarEntry("BOOT-INF/classes/app.properties"));
+			out.write("foo=bar\n".getBytes());
+			out.closeEntry();
+		}
+		expected.expect(RuntimeException.class);
+		expected.expectMessage("packed fat jar");
+		String[] args = new String[] { "--thin.archive=" + jar, "--thin.exec=true" };
+		ThinJarLauncher.main(args);
+	}
+
 	@Test
 	public void missingThinRootWithoutPom() throws Exception {
 		deleteRecursively(
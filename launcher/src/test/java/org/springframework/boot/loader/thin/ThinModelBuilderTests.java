@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.boot.loader.thin;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelCache;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class ThinModelBuilderTests {
+
+	private static final File MODELS = new File("target/thin/models");
+
+	private ModelResolver resolver = Mockito.mock(ModelResolver.class);
+
+	@Before
+	public void init() throws Exception {
+		FileSystemUtils.deleteRecursively(MODELS);
+		Mockito.when(resolver.resolveModel("com.example", "bom", "1.0"))
+				.thenReturn(new FileModelSource(
+						new File("src/test/resources/apps/cloud/pom.xml")));
+	}
+
+	@Test
+	public void importCached() throws Exception {
+		cache().put("com.example", "bom", "1.0", "import", management());
+		assertThat(MODELS.list()).hasSize(1);
+		// New builder, so nothing in memory
+		DependencyManagement result = (DependencyManagement) cache()
+				.get("com.example", "bom", "1.0", "import");
+		assertThat(result).isNotNull();
+		assertThat(result.getDependencies()).hasSize(1);
+		assertThat(result.getDependencies().get(0).getVersion()).isEqualTo("2.0");
+	}
+
+	@Test
+	public void corruptEntryIgnored() throws Exception {
+		cache().put("com.example", "bom", "1.0", "import", management());
+		File file = MODELS.listFiles()[0];
+		assertThat(file.getName()).endsWith(".xml");
+		FileCopyUtils.copy("not a pom".getBytes(), file);
+		assertThat(cache().get("com.example", "bom", "1.0", "import")).isNull();
+	}
+
+	@Test
+	public void differentProperties() throws Exception {
+		cache().put("com.example", "bom", "1.0", "import", management());
+		ModelCache cache = new ThinModelBuilder().new PersistentModelCache(
+				new MapModelCache(), resolver, MODELS, "other");
+		assertThat(cache.get("com.example", "bom", "1.0", "import")).isNull();
+	}
+
+	@Test
+	public void snapshotNotCached() throws Exception {
+		cache().put("com.example", "bom", "1.0-SNAPSHOT", "import", management());
+		assertThat(MODELS.exists()).isFalse();
+	}
+
+	private ModelCache cache() {
+		return new ThinModelBuilder().new PersistentModelCache(new MapModelCache(),
+				resolver, MODELS, "");
+	}
+
+	private DependencyManagement management() {
+		Dependency dependency = new Dependency();
+		dependency.setGroupId("com.example");
+		dependency.setArtifactId("lib");
+		dependency.setVersion("2.0");
+		DependencyManagement management = new DependencyManagement();
+		management.addDependency(dependency);
+		return management;
+	}
+
+	private static class MapModelCache implements ModelCache {
+
+		private Map<String, Object> map = new HashMap<>();
+
+		@Override
+		public void put(String groupId, String artifactId, String version, String tag,
+				Object data) {
+			map.put(groupId + ":" + artifactId + ":" + version + ":" + tag, data);
+		}
+
+		@Override
+		public Object get(String groupId, String artifactId, String version,
+				String tag) {
+			return map.get(groupId + ":" + artifactId + ":" + version + ":" + tag);
+		}
+
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Creates a dynamic AppCDS archive for each of the deployables in the root directory
+ * created by the resolve goal (<code>target/thin/root</code> by default). Each one is run
+ * once in a training mode (it stops when the application context has been refreshed, or
+ * after a training period if it doesn't exit on its own, e.g. a web app) and the classes
+ * it loaded are saved in an archive in <code>thin/cds</code> under the root.
+ * A Java argument file with the JVM flags to use the archive, the class path and the
+ * main class is written next to it, so the app can be run later with
+ *
+ * <pre>
+ * $ cd target/thin/root
+ * $ java -Dthin.root=. -Dthin.cds -jar app.jar
+ * </pre>
+ *
+ * or, without the launcher, <code>java @thin/cds/app.args</code>. Requires Java 13 or
+ * better, and the archive only works with the same JVM and the same files in the same
+ * location, so build it where the app is going to run (e.g. in a container image).
+ *
+ * @author Dave Syer
+ *
+ */
+@Mojo(name = "cds", defaultPhase = LifecyclePhase.PACKAGE, requiresProject = true, threadSafe = true, requiresDependencyResolution = ResolutionScope.NONE, requiresDependencyCollection = ResolutionScope.NONE)
+public class CdsMojo extends ThinJarMojo {
+
+	private static final String CDS_CLASS = "org.springframework.boot.loader.thin.CdsArchive";
+
+	/**
+	 * Directory containing the deployables and their resolved dependencies (the output
+	 * directory of the resolve goal).
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/thin/root", required = true, property = "thin.outputDirectory")
+	private File outputDirectory;
+
+	/**
+	 * The number of seconds each deployable runs for in training mode before it is
+	 * stopped (if it doesn't exit on its own).
+	 */
+	@Parameter(property = "thin.cds.training", defaultValue = "60")
+	private long training;
+
+	/**
+	 * The number of seconds to wait for each deployable (including the resolution of
+	 * its dependencies and the training run) before giving up.
+	 */
+	@Parameter(property = "thin.cds.timeout", defaultValue = "600")
+	private long timeout;
+
+	/**
+	 * The version of the thin launcher used to check that the JVM supports CDS.
+	 */
+	@Parameter(property = "thin.launcherVersion", defaultValue = "${plugin.version}")
+	private String launcherVersion;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+
+		if (this.project.getPackaging().equals("pom")) {
+			getLog().debug("Thin cds goal could not be applied to pom project.");
+			return;
+		}
+		if (skip) {
+			getLog().info("Skipping execution");
+			return;
+		}
+		if (!isCdsSupported()) {
+			getLog().warn("CDS archives need Java 13 or better: "
+					+ System.getProperty("java.specification.version"));
+			return;
+		}
+
+		File[] deployables = outputDirectory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(".jar");
+			}
+		});
+		if (deployables == null || deployables.length == 0) {
+			throw new MojoExecutionException("No deployables found in " + outputDirectory
+					+ ". You need to run the resolve goal first.");
+		}
+
+		for (File deployable : deployables) {
+			String name = deployable.getName();
+			File args = new File(outputDirectory,
+					"thin/cds/" + name.substring(0, name.length() - ".jar".length())
+							+ ".args");
+			getLog().info("Training: " + deployable);
+			runWithForkedJvm(deployable, outputDirectory, this.timeout,
+					"--thin.cds=true", "--thin.cds.training=" + this.training,
+					"--thin.exec=" + args.getAbsolutePath());
+			if (!hasArchive(args)) {
+				throw new MojoExecutionException("No CDS archive created for " + name
+						+ ". Does it use a version of the thin launcher that supports it?");
+			}
+			getLog().info("CDS archive and JVM flags ready in: " + args);
+		}
+	}
+
+	private boolean hasArchive(File args) throws MojoExecutionException {
+		if (!args.exists()) {
+			return false;
+		}
+		try {
+			return FileUtils.fileRead(args, "UTF-8").contains("-XX:SharedArchiveFile");
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot read " + args, e);
+		}
+	}
+
+	private boolean isCdsSupported() throws MojoExecutionException {
+		// The forked JVMs use the same Java as this one
+		URLClassLoader launcher = createLauncherClassLoader(this.launcherVersion);
+		try {
+			return (Boolean) launcher.loadClass(CDS_CLASS).getMethod("isSupported")
+					.invoke(null);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Cannot check CDS support", e);
+		}
+		finally {
+			closeLauncherClassLoader(launcher);
+		}
+	}
+
+}
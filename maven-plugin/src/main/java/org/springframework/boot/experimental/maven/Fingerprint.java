@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * A digest of the inputs (or outputs) of a goal, so that it can skip the work if nothing
+ * has changed since the last time it ran. Values and file contents are added in order,
+ * and the result is stored in a file (one line per fingerprint) and compared with the
+ * one from the previous build.
+ *
+ * @author Dave Syer
+ *
+ */
+class Fingerprint {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final MessageDigest digest;
+
+	Fingerprint() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("No SHA-256 digest available", e);
+		}
+	}
+
+	/**
+	 * Add a value (e.g. artifact coordinates or a configuration setting).
+	 * @param value the value to add
+	 * @return this
+	 */
+	public Fingerprint add(Object value) {
+		this.digest.update(String.valueOf(value).getBytes(UTF_8));
+		this.digest.update((byte) 0);
+		return this;
+	}
+
+	/**
+	 * Add the name and content of a file.
+	 * @param file the file to add (can be null or missing)
+	 * @return this
+	 * @throws IOException if the file cannot be read
+	 */
+	public Fingerprint add(File file) throws IOException {
+		if (file == null || !file.isFile()) {
+			return add("missing:" + file);
+		}
+		add(file.getName());
+		addContent(file);
+		return this;
+	}
+
+	/**
+	 * The SHA-256 checksum of the content of a file (e.g. for a lock file).
+	 * @param file the file
+	 * @return a hex string
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String sha256(File file) throws IOException {
+		Fingerprint fingerprint = new Fingerprint();
+		fingerprint.addContent(file);
+		return fingerprint.value();
+	}
+
+	private void addContent(File file) throws IOException {
+		byte[] buffer = new byte[8192];
+		try (InputStream stream = new FileInputStream(file)) {
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				this.digest.update(buffer, 0, count);
+			}
+		}
+	}
+
+	/**
+	 * Add a cheap stand-in for the checksum of a file in a repository: its name, size and
+	 * modification time, and the SHA-1 that the repository stored next to it (if there is
+	 * one), so that the file itself does not have to be read.
+	 * @param file the file to add (can be null or missing)
+	 * @return this
+	 * @throws IOException if the stored checksum cannot be read
+	 */
+	public Fingerprint addChecksum(File file) throws IOException {
+		if (file == null || !file.isFile()) {
+			return add("missing:" + file);
+		}
+		add(file.getName() + ":" + file.length() + ":" + file.lastModified());
+		File sha1 = new File(file.getParentFile(), file.getName() + ".sha1");
+		if (sha1.isFile()) {
+			add(FileUtils.fileRead(sha1, "UTF-8").trim());
+		}
+		return this;
+	}
+
+	/**
+	 * Add the names and sizes of the files in a directory (recursively), without reading
+	 * them, so it is cheap even for a big directory like a local repository.
+	 * @param directory the directory to add (can be null or missing)
+	 * @return this
+	 */
+	public Fingerprint addTree(File directory) {
+		if (directory == null || !directory.isDirectory()) {
+			return add("missing:" + directory);
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return add("unreadable:" + directory);
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			if (file.isDirectory()) {
+				add(file.getName() + "/");
+				addTree(file);
+			}
+			else {
+				add(file.getName() + ":" + file.length());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * The value of the fingerprint. Can only be called once.
+	 * @return a hex string
+	 */
+	public String value() {
+		StringBuilder builder = new StringBuilder();
+		for (byte b : this.digest.digest()) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Check if some fingerprints are the same as the ones recorded in a file.
+	 * @param record the file
+	 * @param values the fingerprints
+	 * @return true if the file exists and has the same fingerprints
+	 */
+	public static boolean matches(File record, String... values) {
+		if (!record.exists()) {
+			return false;
+		}
+		try {
+			return join(values).equals(FileUtils.fileRead(record, "UTF-8"));
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Record some fingerprints in a file.
+	 * @param record the file
+	 * @param values the fingerprints
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File record, String... values) throws IOException {
+		record.getParentFile().mkdirs();
+		FileUtils.fileWrite(record, "UTF-8", join(values));
+	}
+
+	private static String join(String... values) {
+		StringBuilder builder = new StringBuilder();
+		for (String value : values) {
+			builder.append(value).append("\n");
+		}
+		return builder.toString();
+	}
+
+}
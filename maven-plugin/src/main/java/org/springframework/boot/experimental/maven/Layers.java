@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Splits a thin root directory (deployables plus a local repository) into layers for a
+ * container image, ordered from the least to the most likely to change: third party
+ * releases, snapshots, the organization's own artifacts and finally the application
+ * itself (everything outside the repository). Each layer is a directory with the same
+ * structure as the root, so copying them all to the same place recreates the root. The
+ * files are hard linked if possible (otherwise copied), and a
+ * <code>layers.idx</code> lists the layers and the files in them.
+ *
+ * @author Dave Syer
+ *
+ */
+class Layers {
+
+	static final String DEPENDENCIES = "dependencies";
+
+	static final String SNAPSHOT_DEPENDENCIES = "snapshot-dependencies";
+
+	static final String ORGANIZATION_DEPENDENCIES = "organization-dependencies";
+
+	static final String APPLICATION = "application";
+
+	private static final String REPOSITORY = "repository";
+
+	private final List<String> groups;
+
+	/**
+	 * @param groups the group id prefixes of the organization's own artifacts
+	 */
+	Layers(List<String> groups) {
+		this.groups = groups == null ? Collections.<String>emptyList() : groups;
+	}
+
+	/**
+	 * Copy the contents of the root into layers in the target directory.
+	 * @param root the root directory
+	 * @param target the directory for the layers (emptied first)
+	 * @return the paths (relative to the root) in each layer
+	 * @throws IOException if the files cannot be copied
+	 */
+	public Map<String, List<String>> write(File root, File target) throws IOException {
+		Map<String, List<String>> layers = new LinkedHashMap<>();
+		for (String layer : Arrays.asList(DEPENDENCIES, SNAPSHOT_DEPENDENCIES,
+				ORGANIZATION_DEPENDENCIES, APPLICATION)) {
+			layers.put(layer, new ArrayList<String>());
+		}
+		collect(root, "", layers);
+		if (target.exists()) {
+			FileUtils.deleteDirectory(target);
+		}
+		for (Map.Entry<String, List<String>> layer : layers.entrySet()) {
+			File directory = new File(target, layer.getKey());
+			directory.mkdirs();
+			for (String path : layer.getValue()) {
+				link(new File(root, path), new File(directory, path));
+			}
+		}
+		index(layers, new File(target, "layers.idx"));
+		return layers;
+	}
+
+	private void collect(File directory, String prefix, Map<String, List<String>> layers)
+			throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list files in " + directory);
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				collect(file, path + "/", layers);
+			}
+			else {
+				layers.get(layer(path)).add(path);
+			}
+		}
+	}
+
+	String layer(String path) {
+		if (!path.startsWith(REPOSITORY + "/")) {
+			return APPLICATION;
+		}
+		// repository/group/path/artifactId/version/file for artifacts, but artifact
+		// level metadata is in repository/group/path/artifactId/file
+		String[] segments = path.substring(REPOSITORY.length() + 1).split("/");
+		String directory = segments.length > 1 ? segments[segments.length - 2] : "";
+		boolean snapshot = directory.endsWith("-SNAPSHOT");
+		boolean versioned = segments.length >= 4;
+		if (isMetadata(segments[segments.length - 1])) {
+			// Only snapshots have version level metadata
+			versioned = snapshot;
+		}
+		int end = Math.max(0, segments.length - (versioned ? 3 : 2));
+		StringBuilder group = new StringBuilder();
+		for (int i = 0; i < end; i++) {
+			if (i > 0) {
+				group.append(".");
+			}
+			group.append(segments[i]);
+		}
+		for (String prefix : this.groups) {
+			if (group.toString().equals(prefix)
+					|| group.toString().startsWith(prefix + ".")) {
+				return ORGANIZATION_DEPENDENCIES;
+			}
+		}
+		if (versioned && snapshot) {
+			return SNAPSHOT_DEPENDENCIES;
+		}
+		return DEPENDENCIES;
+	}
+
+	private boolean isMetadata(String name) {
+		return name.startsWith("maven-metadata")
+				|| name.equals("resolver-status.properties");
+	}
+
+	private void link(File source, File target) throws IOException {
+		target.getParentFile().mkdirs();
+		try {
+			Files.createLink(target.toPath(), source.toPath());
+		}
+		catch (IOException | UnsupportedOperationException e) {
+			// Different file system or no hard links
+			Files.copy(source.toPath(), target.toPath());
+		}
+	}
+
+	private void index(Map<String, List<String>> layers, File file) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, List<String>> layer : layers.entrySet()) {
+			builder.append("- \"").append(layer.getKey()).append("\":\n");
+			for (String path : layer.getValue()) {
+				builder.append("  - \"").append(path).append("\"\n");
+			}
+		}
+		FileUtils.fileWrite(file, "UTF-8", builder.toString());
+	}
+
+}
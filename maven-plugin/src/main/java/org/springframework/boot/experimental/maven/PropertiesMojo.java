@@ -19,7 +19,10 @@ package org.springframework.boot.experimental.maven;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 
@@ -31,11 +34,18 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
 
 import org.springframework.util.StringUtils;
 
 /**
  * Resolves the dependencies for a thin jar artifact and outputs a thin properties file.
+ * The file is not touched if the dependencies and the configuration have not changed
+ * since the last time it was generated (the fingerprint is kept in
+ * <code>target/thin</code>, so that it doesn't end up in the jar). Optionally also
+ * outputs a lock file (<code>thin.lock</code>) with the location, size, checksum and
+ * source repository of each dependency, so that the launcher can find them without
+ * building a model.
  *
  * @author Dave Syer
  *
@@ -64,6 +74,14 @@ public class PropertiesMojo extends ThinJarMojo {
 	@Parameter(property = "thin.snapshotStyle", defaultValue = "TIMESTAMP")
 	private SnapshotStyle snapshotStyle;
 
+	/**
+	 * A flag to indicate whether to generate a lock file (<code>thin.lock</code>) next to
+	 * the properties file. Only used if the transitive dependencies are computed. The
+	 * artifacts are resolved to compute their checksums.
+	 */
+	@Parameter(property = "thin.lock", defaultValue = "false")
+	private boolean lock;
+
 	private enum SnapshotStyle {
 		SNAPSHOT, TIMESTAMP
 	}
@@ -99,19 +117,39 @@ public class PropertiesMojo extends ThinJarMojo {
 				}
 			}
 
-			boms(project, props);
+			List<Artifact> locked = new ArrayList<>();
 			Set<Artifact> artifacts = this.compute ? project.getArtifacts()
 					: project.getDependencyArtifacts();
 			for (Artifact artifact : artifacts) {
 				if ("runtime".equals(artifact.getScope())
 						|| "compile".equals(artifact.getScope())) {
-					props.setProperty("dependencies." + key(artifact, props),
-							coordinates(artifact));
+					locked.add(artifact);
 				}
 			}
+			// Check the inputs before doing any work (the lock file needs a checksum of
+			// every artifact)
+			File record = new File(this.project.getBuild().getDirectory(),
+					"thin/properties.fingerprint");
+			File lockFile = new File(outputDirectory, "thin.lock");
+			String inputs = inputs(locked);
+			if (!this.force
+					&& Fingerprint.matches(record, inputs, outputs(target, lockFile))) {
+				getLog().info("Properties up to date in: " + outputDirectory);
+				return;
+			}
+			boms(project, props);
+			for (Artifact artifact : locked) {
+				props.setProperty("dependencies." + key(artifact, props),
+						coordinates(artifact));
+			}
 			props.store(new FileOutputStream(target),
 					"Enhanced by thin jar maven plugin");
 			getLog().info("Saved thin.properties");
+			if (this.lock && this.compute) {
+				lock(locked, lockFile);
+				getLog().info("Saved thin.lock");
+			}
+			Fingerprint.write(record, inputs, outputs(target, lockFile));
 		}
 		catch (Exception e) {
 			throw new MojoExecutionException(
@@ -123,6 +161,80 @@ public class PropertiesMojo extends ThinJarMojo {
 
 	}
 
+	private String inputs(List<Artifact> artifacts) throws IOException {
+		Fingerprint fingerprint = new Fingerprint().add(this.snapshotStyle)
+				.add(this.outputDirectory.getAbsolutePath()).add(this.lock)
+				.add(this.compute);
+		// The poms have the BOMs and the dependency declarations
+		for (MavenProject project = this.project; project != null; project = project
+				.getParent()) {
+			fingerprint.add(project.getId()).add(project.getFile());
+		}
+		for (Artifact artifact : artifacts) {
+			fingerprint.add(coordinates(artifact));
+			if (this.lock && this.compute) {
+				// The lock file has checksums, so it changes if the content does
+				fingerprint.addChecksum(resolveFile(artifact));
+			}
+		}
+		return fingerprint.value();
+	}
+
+	private String outputs(File target, File lockFile) throws IOException {
+		Fingerprint fingerprint = new Fingerprint().add(target);
+		if (this.lock) {
+			fingerprint.add(lockFile);
+		}
+		return fingerprint.value();
+	}
+
+	private void lock(List<Artifact> artifacts, File lockFile) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		builder.append("# Generated by thin jar maven plugin\n");
+		builder.append("# coordinates path size sha256 repository\n");
+		for (Artifact artifact : artifacts) {
+			File file = resolveFile(artifact);
+			if (file == null || !file.isFile()) {
+				throw new IllegalStateException("Cannot lock " + artifact
+						+ " (it is not a file in a repository): " + file);
+			}
+			builder.append(coordinates(artifact)).append(" ").append(path(artifact))
+					.append(" ").append(file.length()).append(" ")
+					.append(Fingerprint.sha256(file)).append(" ")
+					.append(repository(file)).append("\n");
+		}
+		FileUtils.fileWrite(lockFile, "UTF-8", builder.toString());
+	}
+
+	private String path(Artifact artifact) {
+		// The path in a local repository
+		String extension = artifact.getArtifactHandler() != null
+				? artifact.getArtifactHandler().getExtension()
+				: artifact.getType();
+		String classifier = artifact.getClassifier();
+		return artifact.getGroupId().replace(".", "/") + "/" + artifact.getArtifactId()
+				+ "/" + artifact.getBaseVersion() + "/" + artifact.getArtifactId() + "-"
+				+ version(artifact)
+				+ (StringUtils.hasText(classifier) ? "-" + classifier : "") + "."
+				+ extension;
+	}
+
+	private String repository(File file) throws IOException {
+		// Written by Maven next to the artifacts in the local repository
+		File remotes = new File(file.getParentFile(), "_remote.repositories");
+		if (remotes.exists()) {
+			for (String line : FileUtils.fileRead(remotes, "UTF-8").split("\n")) {
+				line = line.trim();
+				if (line.startsWith(file.getName() + ">") && line.endsWith("=")) {
+					String id = line.substring(file.getName().length() + 1,
+							line.length() - 1);
+					return id.length() > 0 ? id : "local";
+				}
+			}
+		}
+		return "-";
+	}
+
 	private String key(Artifact dependency, Properties props) {
 		String key = dependency.getArtifactId();
 		if (!StringUtils.isEmpty(dependency.getClassifier())) {
@@ -173,9 +285,7 @@ public class PropertiesMojo extends ThinJarMojo {
 		// group:artifact:extension:classifier:version
 		String classifier = artifact.getClassifier();
 		String extension = artifact.getType();
-		String version = snapshotStyle.equals(SnapshotStyle.SNAPSHOT)
-				? artifact.getBaseVersion()
-				: artifact.getVersion();
+		String version = version(artifact);
 		return artifact.getGroupId() + ":" + artifact.getArtifactId()
 				+ (StringUtils.hasText(extension)
 						&& (!"jar".equals(extension) || StringUtils.hasText(classifier))
@@ -185,4 +295,9 @@ public class PropertiesMojo extends ThinJarMojo {
 				+ (withVersion ? ":" + version : "");
 	}
 
+	private String version(Artifact artifact) {
+		return snapshotStyle.equals(SnapshotStyle.SNAPSHOT) ? artifact.getBaseVersion()
+				: artifact.getVersion();
+	}
+
 }
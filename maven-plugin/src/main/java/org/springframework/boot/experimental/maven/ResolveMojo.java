@@ -17,8 +17,17 @@
 package org.springframework.boot.experimental.maven;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -37,7 +46,11 @@ import org.codehaus.plexus.util.FileUtils;
  * Resolves the dependencies for a thin jar artifact (or a set of them). The deployable
  * artifact is copied to <code>target/thin/root</code> by default, and then it is executed
  * with <code>-Dthin.root=.</code> in "dry run" mode. As a result, it can be executed
- * efficiently again from that directory, without downloading any more libraries. I.e.
+ * efficiently again from that directory, without downloading any more libraries. The
+ * deployables are resolved in parallel in the Maven JVM by default (sharing a single
+ * dependency resolver), or one at a time in forked JVMs if <code>fork=true</code>. The
+ * goal is skipped if the deployables and the configuration have not changed since the
+ * last time it ran, and the resolved dependencies are still there. I.e.
  * 
  * <pre>
  * $ mvn package spring-boot-thin:resolve
@@ -75,6 +88,49 @@ public class ResolveMojo extends ThinJarMojo {
 	@Parameter(property = "thin.unpack")
 	private boolean unpack = false;
 
+	/**
+	 * A flag to indicate whether to resolve each deployable in a forked JVM (one at a
+	 * time) instead of in parallel in the Maven JVM.
+	 */
+	@Parameter(property = "thin.fork", defaultValue = "false")
+	private boolean fork;
+
+	/**
+	 * The number of deployables to resolve in parallel (if not forked). Defaults to the
+	 * number of processors.
+	 */
+	@Parameter(property = "thin.resolveThreads")
+	private int resolveThreads;
+
+	/**
+	 * The version of the thin launcher to resolve the deployables with (if not forked).
+	 */
+	@Parameter(property = "thin.launcherVersion", defaultValue = "${plugin.version}")
+	private String launcherVersion;
+
+	/**
+	 * A flag to indicate whether to split the output directory into layers for a
+	 * container image (third party releases, snapshots, the organization's own artifacts
+	 * and the application), in the layers directory.
+	 */
+	@Parameter(property = "thin.layers", defaultValue = "false")
+	private boolean layers;
+
+	/**
+	 * Directory for the layers (if enabled). Each layer is in a subdirectory with the same
+	 * structure as the output directory, and there is an index in
+	 * <code>layers.idx</code>.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/thin/layers", required = true, property = "thin.layersDirectory")
+	private File layersDirectory;
+
+	/**
+	 * The group ids (or prefixes) of the organization's own artifacts, which go in their
+	 * own layer. Defaults to the group id of the current project.
+	 */
+	@Parameter(property = "thin.layerGroups")
+	private List<String> layerGroups;
+
 	/**
 	 * To look up Archiver/UnArchiver implementations
 	 */
@@ -96,6 +152,7 @@ public class ResolveMojo extends ThinJarMojo {
 		outputDirectory.mkdirs();
 
 		List<File> deployables = new ArrayList<>();
+		List<String> coordinates = new ArrayList<>();
 		File file = this.project.getArtifact().getFile();
 		if (file != null && this.includeSelf && !this.unpack) {
 			deployables.add(file);
@@ -106,6 +163,8 @@ public class ResolveMojo extends ThinJarMojo {
 					File resolved = resolveFile(deployable);
 					if (resolved != null) {
 						deployables.add(resolved);
+						coordinates.add(deployable.getManagementKey() + ":"
+								+ deployable.getVersion());
 					}
 				}
 			}
@@ -116,6 +175,17 @@ public class ResolveMojo extends ThinJarMojo {
 					"No deployables found. If your only deployable is the current project jar, you need to run 'mvn package' at the same time.");
 		}
 
+		// Not in the output directory, which ends up in images (and layers)
+		File record = new File(this.project.getBuild().getDirectory(),
+				"thin/resolve.fingerprint");
+		String inputs = inputs(deployables, coordinates, file);
+		if (!this.force && Fingerprint.matches(record, inputs, outputs(deployables))) {
+			getLog().info(
+					"Deployables and dependencies up to date in: " + outputDirectory);
+			layer();
+			return;
+		}
+
 		for (File deployable : deployables) {
 			getLog().info("Deploying: " + deployable);
 			try {
@@ -124,17 +194,28 @@ public class ResolveMojo extends ThinJarMojo {
 
 				FileUtils.copyFile(deployable,
 						new File(outputDirectory, deployable.getName()));
-				runWithForkedJvm(deployable, outputDirectory);
 			}
 			catch (Exception e) {
 				throw new MojoExecutionException("Cannot locate deployable " + deployable,
 						e);
 			}
 		}
+		List<File> archives = new ArrayList<>(deployables);
+		if (this.includeSelf && this.unpack) {
+			archives.add(file);
+		}
+
+		if (this.fork) {
+			for (File archive : archives) {
+				runWithForkedJvm(archive, outputDirectory);
+			}
+		}
+		else {
+			resolve(archives);
+		}
 
 		if (this.includeSelf && this.unpack) {
 			try {
-				runWithForkedJvm(file, outputDirectory);
 				UnArchiver archiver = archiverManager.getUnArchiver(file);
 				archiver.setSourceFile(file);
 				archiver.setDestDirectory(outputDirectory);
@@ -153,7 +234,108 @@ public class ResolveMojo extends ThinJarMojo {
 					"No dependencies resolved. Is the thin layout applied to the Spring Boot plugin as a dependency?");
 		}
 
+		try {
+			Fingerprint.write(record, inputs, outputs(deployables));
+		}
+		catch (IOException e) {
+			getLog().warn("Cannot record fingerprint in " + record, e);
+		}
+
+		layer();
+
 		getLog().info("All deployables and dependencies ready in: " + outputDirectory);
 	}
 
+	private void layer() throws MojoExecutionException {
+		if (!this.layers) {
+			return;
+		}
+		List<String> groups = this.layerGroups;
+		if (groups == null || groups.isEmpty()) {
+			groups = Arrays.asList(this.project.getGroupId());
+		}
+		try {
+			Map<String, List<String>> result = new Layers(groups).write(outputDirectory,
+					layersDirectory);
+			for (Map.Entry<String, List<String>> layer : result.entrySet()) {
+				getLog().info("Layer " + layer.getKey() + ": " + layer.getValue().size()
+						+ " files");
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot create layers in " + layersDirectory,
+					e);
+		}
+		getLog().info("Layers ready in: " + layersDirectory);
+	}
+
+	private String inputs(List<File> deployables, List<String> coordinates, File self)
+			throws MojoExecutionException {
+		Fingerprint fingerprint = new Fingerprint().add(this.includeSelf)
+				.add(this.unpack).add(this.fork).add(this.launcherVersion)
+				.add(this.settings.getLocalRepository())
+				.add(this.outputDirectory.getAbsolutePath()).add(coordinates);
+		try {
+			for (File deployable : deployables) {
+				fingerprint.add(deployable);
+			}
+			if (this.includeSelf && this.unpack) {
+				fingerprint.add(self);
+			}
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Cannot read deployables", e);
+		}
+		return fingerprint.value();
+	}
+
+	private String outputs(List<File> deployables) {
+		Fingerprint fingerprint = new Fingerprint();
+		for (File deployable : deployables) {
+			File copy = new File(outputDirectory, deployable.getName());
+			fingerprint.add(copy.getName() + ":" + copy.length());
+		}
+		return fingerprint.addTree(new File(outputDirectory, "repository")).value();
+	}
+
+	private void resolve(List<File> deployables) throws MojoExecutionException {
+		final URLClassLoader launcher = createLauncherClassLoader(this.launcherVersion);
+		int threads = this.resolveThreads > 0 ? this.resolveThreads
+				: Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.max(1, Math.min(threads, deployables.size())));
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (final File deployable : deployables) {
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						runInProcess(launcher, deployable, outputDirectory);
+						return null;
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					results.get(i).get();
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof MojoExecutionException) {
+						throw (MojoExecutionException) e.getCause();
+					}
+					throw new MojoExecutionException(
+							"Cannot resolve " + deployables.get(i), e.getCause());
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted", e);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			closeLauncherClassLoader(launcher);
+		}
+	}
+
 }
@@ -17,10 +17,15 @@
 package org.springframework.boot.experimental.maven;
 
 import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.ArtifactResolutionRequest;
@@ -72,11 +77,21 @@ public abstract class ThinJarMojo extends AbstractMojo {
 	@Parameter(property = "skip", defaultValue = "false")
 	protected boolean skip;
 
+	/**
+	 * Do the work even if the inputs have not changed since the last build.
+	 */
+	@Parameter(property = "thin.force", defaultValue = "false")
+	protected boolean force;
+
 	@Component
 	private RepositorySystem repositorySystem;
 
 	private static final int EXIT_CODE_SIGINT = 130;
 
+	private static final String LAUNCHER_CLASS = "org.springframework.boot.loader.thin.ThinJarLauncher";
+
+	private static final String RESOLVER_CLASS = "org.springframework.boot.loader.thin.DependencyResolver";
+
 	protected File resolveFile(Dependency deployable) {
 		Artifact artifact = repositorySystem.createArtifactWithClassifier(
 				deployable.getGroupId(), deployable.getArtifactId(),
@@ -87,9 +102,41 @@ public abstract class ThinJarMojo extends AbstractMojo {
 		return artifact.getFile();
 	}
 
+	/**
+	 * Resolve the file for an artifact (e.g. a project dependency that was collected but
+	 * not resolved).
+	 * @param artifact the artifact
+	 * @return the file
+	 */
+	protected File resolveFile(Artifact artifact) {
+		if (artifact.getFile() != null) {
+			return artifact.getFile();
+		}
+		ArtifactResolutionRequest request = getRequest(artifact);
+		request.setRemoteRepositories(this.project.getRemoteArtifactRepositories());
+		return repositorySystem.resolve(request).getArtifacts().iterator().next()
+				.getFile();
+	}
+
 	protected void runWithForkedJvm(File archive, File workingDirectory, String... args)
 			throws MojoExecutionException {
+		runWithForkedJvm(archive, workingDirectory, 0, args);
+	}
 
+	/**
+	 * Run an archive in a forked JVM in "dry run" mode, and kill it if it has not
+	 * finished after a timeout.
+	 * @param archive the archive to run
+	 * @param workingDirectory the working directory
+	 * @param timeout the timeout in seconds (zero or less for no timeout)
+	 * @param args the arguments for the launcher
+	 * @throws MojoExecutionException if the process fails or times out
+	 */
+	protected void runWithForkedJvm(File archive, File workingDirectory,
+			final long timeout, String... args) throws MojoExecutionException {
+
+		final AtomicBoolean timedOut = new AtomicBoolean();
+		Thread timer = null;
 		try {
 			String localRepo = this.settings.getLocalRepository();
 			String thinRepo = getThinRepo();
@@ -108,12 +155,34 @@ public abstract class ThinJarMojo extends AbstractMojo {
 				getLog().debug("Thin repo: " + thinRepo);
 				cmd.add(1, "-Dthin.repo=" + thinRepo);
 			}
-			RunProcess runProcess = new RunProcess(workingDirectory,
+			final RunProcess runProcess = new RunProcess(workingDirectory,
 					cmd.toArray(new String[0]));
 			Runtime.getRuntime()
 					.addShutdownHook(new Thread(new RunProcessKiller(runProcess)));
+			if (timeout > 0) {
+				timer = new Thread("thin-fork-timeout") {
+					@Override
+					public void run() {
+						try {
+							Thread.sleep(timeout * 1000);
+						}
+						catch (InterruptedException e) {
+							// The process finished first
+							return;
+						}
+						timedOut.set(true);
+						runProcess.kill();
+					}
+				};
+				timer.setDaemon(true);
+				timer.start();
+			}
 			getLog().debug("Running: " + archive);
 			int exitCode = runProcess.run(true, args);
+			if (timedOut.get()) {
+				throw new MojoExecutionException(
+						"Application did not finish within " + timeout + " seconds");
+			}
 			if (exitCode == 0 || exitCode == EXIT_CODE_SIGINT) {
 				return;
 			}
@@ -123,6 +192,105 @@ public abstract class ThinJarMojo extends AbstractMojo {
 		catch (Exception ex) {
 			throw new MojoExecutionException("Could not exec java", ex);
 		}
+		finally {
+			if (timer != null) {
+				timer.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Create a class loader for the thin launcher (the self-contained "exec" jar), isolated
+	 * from Maven and from this plugin, so that it can be used to resolve deployables in
+	 * this JVM.
+	 * @param version the version of the launcher
+	 * @return a class loader containing the launcher
+	 * @throws MojoExecutionException if the launcher cannot be resolved
+	 */
+	protected URLClassLoader createLauncherClassLoader(String version)
+			throws MojoExecutionException {
+		Dependency launcher = new Dependency();
+		launcher.setGroupId("org.springframework.boot.experimental");
+		launcher.setArtifactId("spring-boot-thin-launcher");
+		launcher.setVersion(version);
+		launcher.setClassifier("exec");
+		launcher.setType("jar");
+		try {
+			File file = resolveFile(launcher);
+			getLog().debug("Launcher: " + file);
+			return new URLClassLoader(new URL[] { file.toURI().toURL() },
+					ClassLoader.getSystemClassLoader().getParent());
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Cannot resolve launcher " + version, e);
+		}
+	}
+
+	/**
+	 * Resolve the dependencies of an archive with the thin launcher in this JVM (the
+	 * equivalent of {@link #runWithForkedJvm(File, File, String...)} in "dry run" mode).
+	 * Safe to call from multiple threads with the same class loader, in which case they
+	 * all share the same dependency resolver.
+	 * @param launcher a class loader from {@link #createLauncherClassLoader(String)}
+	 * @param archive the archive to resolve
+	 * @param root the root directory for the resolved dependencies
+	 * @throws MojoExecutionException if the resolution fails
+	 */
+	protected void runInProcess(ClassLoader launcher, File archive, File root)
+			throws MojoExecutionException {
+		List<String> args = new ArrayList<>(Arrays.asList("--thin.dryrun",
+				"--thin.archive=" + archive.getAbsolutePath(),
+				"--thin.root=" + root.getAbsolutePath()));
+		String debug = getProperty("thin.debug");
+		if (debug != null && !"false".equals(debug)) {
+			args.add("--thin.debug=true");
+		}
+		// Resolve with the same local repository as this build (the override only applies
+		// to this invocation, not to other users of the launcher). Mirrors and their
+		// credentials come from the Maven settings, which the resolver reads itself.
+		String localRepo = this.settings.getLocalRepository();
+		if (localRepo != null) {
+			args.add("--thin.properties.maven.repo.local=" + localRepo);
+		}
+		Thread thread = Thread.currentThread();
+		ClassLoader context = thread.getContextClassLoader();
+		thread.setContextClassLoader(launcher);
+		try {
+			getLog().debug("Resolving: " + archive);
+			Method main = launcher.loadClass(LAUNCHER_CLASS).getMethod("main",
+					String[].class);
+			main.invoke(null, (Object) args.toArray(new String[0]));
+		}
+		catch (InvocationTargetException e) {
+			throw new MojoExecutionException("Cannot resolve " + archive,
+					e.getTargetException());
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Cannot resolve " + archive, e);
+		}
+		finally {
+			thread.setContextClassLoader(context);
+		}
+	}
+
+	/**
+	 * Release the resources (the dependency resolver and the jar file) held by a class
+	 * loader from {@link #createLauncherClassLoader(String)}.
+	 * @param launcher the class loader
+	 */
+	protected void closeLauncherClassLoader(URLClassLoader launcher) {
+		try {
+			launcher.loadClass(RESOLVER_CLASS).getMethod("close").invoke(null);
+		}
+		catch (Exception e) {
+			getLog().debug("Cannot close dependency resolver", e);
+		}
+		try {
+			launcher.close();
+		}
+		catch (Exception e) {
+			getLog().debug("Cannot close launcher class loader", e);
+		}
 	}
 
 	private String getThinRepo() {
@@ -130,6 +298,10 @@ public abstract class ThinJarMojo extends AbstractMojo {
 		if (repo != null) {
 			return repo;
 		}
+		return getMirror();
+	}
+
+	private String getMirror() {
 		for (Mirror mirror : this.settings.getMirrors()) {
 			String of = mirror.getMirrorOf();
 			if ("*".equals(of) || "central".equals(of)
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.boot.experimental.maven;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Dave Syer
+ *
+ */
+public class LayersTests {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private Layers layers = new Layers(Arrays.asList("com.acme"));
+
+	@Test
+	public void release() throws Exception {
+		assertEquals(Layers.DEPENDENCIES, layers.layer(
+				"repository/org/springframework/spring-core/4.3.0.RELEASE/spring-core-4.3.0.RELEASE.jar"));
+		assertEquals(Layers.DEPENDENCIES, layers.layer(
+				"repository/org/springframework/spring-core/maven-metadata-central.xml"));
+		// Not the organization's group, even though it has the same prefix
+		assertEquals(Layers.DEPENDENCIES,
+				layers.layer("repository/com/acmeco/lib/1.0/lib-1.0.jar"));
+	}
+
+	@Test
+	public void snapshot() throws Exception {
+		assertEquals(Layers.SNAPSHOT_DEPENDENCIES, layers.layer(
+				"repository/org/example/lib/1.0-SNAPSHOT/lib-1.0-20180101.120000-1.jar"));
+		assertEquals(Layers.SNAPSHOT_DEPENDENCIES, layers.layer(
+				"repository/org/example/lib/1.0-SNAPSHOT/maven-metadata-local.xml"));
+		assertEquals(Layers.DEPENDENCIES,
+				layers.layer("repository/org/example/lib/maven-metadata-local.xml"));
+	}
+
+	@Test
+	public void organization() throws Exception {
+		assertEquals(Layers.ORGANIZATION_DEPENDENCIES,
+				layers.layer("repository/com/acme/lib/1.0/lib-1.0.jar"));
+		assertEquals(Layers.ORGANIZATION_DEPENDENCIES,
+				layers.layer("repository/com/acme/lib/1.1-SNAPSHOT/lib-1.1-SNAPSHOT.jar"));
+		assertEquals(Layers.ORGANIZATION_DEPENDENCIES, layers
+				.layer("repository/com/acme/tools/util/2.0/util-2.0.pom"));
+		// Artifact level metadata
+		assertEquals(Layers.ORGANIZATION_DEPENDENCIES,
+				layers.layer("repository/com/acme/app/maven-metadata-local.xml"));
+		assertEquals(Layers.ORGANIZATION_DEPENDENCIES,
+				layers.layer("repository/com/acme/app/resolver-status.properties"));
+	}
+
+	@Test
+	public void application() throws Exception {
+		assertEquals(Layers.APPLICATION, layers.layer("app-0.0.1-SNAPSHOT.jar"));
+		assertEquals(Layers.APPLICATION, layers.layer("thin/classpath/app.properties"));
+	}
+
+	@Test
+	public void index() throws Exception {
+		File root = temp.newFolder("root");
+		File target = new File(temp.getRoot(), "layers");
+		file(root, "app.jar");
+		file(root, "repository/org/example/lib/1.0/lib-1.0.jar");
+		file(root, "repository/org/example/lib/2.0-SNAPSHOT/lib-2.0-SNAPSHOT.jar");
+		file(root, "repository/com/acme/app/maven-metadata-local.xml");
+		Map<String, List<String>> result = layers.write(root, target);
+		assertEquals(Arrays.asList(Layers.DEPENDENCIES, Layers.SNAPSHOT_DEPENDENCIES,
+				Layers.ORGANIZATION_DEPENDENCIES, Layers.APPLICATION),
+				Arrays.asList(result.keySet().toArray()));
+		assertTrue(new File(target,
+				"organization-dependencies/repository/com/acme/app/maven-metadata-local.xml")
+						.exists());
+		assertTrue(new File(target, "application/app.jar").exists());
+		assertEquals("- \"dependencies\":\n"
+				+ "  - \"repository/org/example/lib/1.0/lib-1.0.jar\"\n"
+				+ "- \"snapshot-dependencies\":\n"
+				+ "  - \"repository/org/example/lib/2.0-SNAPSHOT/lib-2.0-SNAPSHOT.jar\"\n"
+				+ "- \"organization-dependencies\":\n"
+				+ "  - \"repository/com/acme/app/maven-metadata-local.xml\"\n"
+				+ "- \"application\":\n" + "  - \"app.jar\"\n",
+				FileUtils.fileRead(new File(target, "layers.idx"), "UTF-8"));
+	}
+
+	private void file(File root, String path) throws Exception {
+		File file = new File(root, path);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file, "UTF-8", path);
+	}
+
+}